@@ -0,0 +1,74 @@
+package com.doctell.app.model.pdf;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.tom_roush.pdfbox.android.PDFBoxResourceLoader;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.text.PDFTextStripper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Per-page timing of {@link TextOnlyStripper} against a plain {@link PDFTextStripper} on the
+ * books in the app's library ({@code files/docs}). Import a few scanned-with-OCR and
+ * brochure-style PDFs first; timings go to logcat under {@value #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TextOnlyStripperBenchmark {
+
+    private static final String TAG = "StripperBenchmark";
+    private static final int MAX_PAGES = 40;
+
+    @Test
+    public void textOnly_matchesPlainStripper_andLogsTimes() throws IOException {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PDFBoxResourceLoader.init(ctx);
+        File[] books = new File(ctx.getFilesDir(), "docs").listFiles((d, n) -> n.endsWith(".pdf"));
+        assumeTrue("no books in the library", books != null && books.length > 0);
+
+        for (File book : books) {
+            try (PDDocument doc = PdfDocuments.open(ctx, book)) {
+                int pages = Math.min(MAX_PAGES, doc.getNumberOfPages());
+                // one warm-up page so font loading is not charged to either side
+                strip(new PDFTextStripper(), doc, 0);
+
+                long plainNs = 0, textOnlyNs = 0;
+                for (int p = 0; p < pages; p++) {
+                    long t0 = SystemClock.elapsedRealtimeNanos();
+                    String plain = strip(new PDFTextStripper(), doc, p);
+                    long t1 = SystemClock.elapsedRealtimeNanos();
+                    String textOnly = strip(new TextOnlyStripper(), doc, p);
+                    long t2 = SystemClock.elapsedRealtimeNanos();
+
+                    assertEquals(book.getName() + " page " + p, plain, textOnly);
+                    plainNs += t1 - t0;
+                    textOnlyNs += t2 - t1;
+                    Log.i(TAG, book.getName() + " p" + p + ": plain " + (t1 - t0) / 1000
+                            + " us, text-only " + (t2 - t1) / 1000 + " us");
+                }
+                Log.i(TAG, book.getName() + ": " + pages + " pages, plain "
+                        + plainNs / 1_000_000 + " ms, text-only " + textOnlyNs / 1_000_000 + " ms");
+            }
+        }
+    }
+
+    private static String strip(PDFTextStripper stripper, PDDocument doc, int page) throws IOException {
+        stripper.setSortByPosition(true);
+        stripper.setAddMoreFormatting(true);
+        stripper.setStartPage(page + 1);
+        stripper.setEndPage(page + 1);
+        return stripper.getText(doc);
+    }
+}
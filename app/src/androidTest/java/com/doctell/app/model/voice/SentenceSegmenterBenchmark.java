@@ -0,0 +1,152 @@
+package com.doctell.app.model.voice;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.doctell.app.model.pdf.PdfDocuments;
+import com.doctell.app.model.pdf.TextOnlyStripper;
+import com.tom_roush.pdfbox.android.PDFBoxResourceLoader;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Timing of {@link SentenceSegmenter}, without a language and with the rules of each speech
+ * language, against the {@code (?<=[.!?])\s+} regex split it replaced, on the page text of the
+ * books in the app's library ({@code files/docs}). Import a few books first; timings go to logcat
+ * under {@value #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SentenceSegmenterBenchmark {
+
+    private static final String TAG = "SegmenterBenchmark";
+    private static final int MAX_PAGES = 40;
+    private static final int ROUNDS = 20;
+    // the speech languages offered in settings
+    private static final String[] LANGUAGES = {"en-US", "sv-SE", "es-ES"};
+    private static final Pattern BREAK = Pattern.compile("(?<=[.!?])\\s+");
+    // the split alone is compared; watermark masking has no counterpart in the regex
+    private static final NoiseFilter NO_NOISE = new NoiseFilter(Collections.emptyList(), new long[0]);
+
+    @Test
+    public void segmenter_matchesRegexSplit_andLogsTimes() throws IOException {
+        for (Book book : libraryText()) {
+            for (String page : book.pages) {
+                assertEquals(book.name, regexSentences(page), segmented(page, null));
+            }
+            // warm up both so the JIT is not charged to either side
+            time(() -> regex(book.pages));
+            time(() -> segment(book.pages, null));
+
+            long regexNs = time(() -> regex(book.pages));
+            long segmenterNs = time(() -> segment(book.pages, null));
+            Log.i(TAG, book.name + ": " + book.pages.size() + " pages x " + ROUNDS + ", regex "
+                    + regexNs / 1_000_000 + " ms, segmenter " + segmenterNs / 1_000_000 + " ms");
+        }
+    }
+
+    @Test
+    public void languageRules_logTimesAgainstRegexSplit() throws IOException {
+        for (Book book : libraryText()) {
+            time(() -> regex(book.pages));
+            for (String lang : LANGUAGES) time(() -> segment(book.pages, lang));
+
+            long regexNs = time(() -> regex(book.pages));
+            StringBuilder line = new StringBuilder(book.name).append(": regex ")
+                    .append(regexNs / 1_000_000).append(" ms");
+            for (String lang : LANGUAGES) {
+                long ns = time(() -> segment(book.pages, lang));
+                line.append(", ").append(lang).append(' ').append(ns / 1_000_000).append(" ms");
+            }
+            Log.i(TAG, line.toString());
+        }
+    }
+
+    private static final class Book {
+        final String name;
+        final List<String> pages = new ArrayList<>();
+
+        Book(String name) {
+            this.name = name;
+        }
+    }
+
+    private static List<Book> libraryText() throws IOException {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PDFBoxResourceLoader.init(ctx);
+        File[] files = new File(ctx.getFilesDir(), "docs").listFiles((d, n) -> n.endsWith(".pdf"));
+        assumeTrue("no books in the library", files != null && files.length > 0);
+
+        List<Book> books = new ArrayList<>();
+        for (File file : files) {
+            Book book = new Book(file.getName());
+            try (PDDocument doc = PdfDocuments.open(ctx, file)) {
+                int pages = Math.min(MAX_PAGES, doc.getNumberOfPages());
+                for (int p = 0; p < pages; p++) {
+                    TextOnlyStripper stripper = new TextOnlyStripper();
+                    stripper.setSortByPosition(true);
+                    stripper.setAddMoreFormatting(true);
+                    stripper.setStartPage(p + 1);
+                    stripper.setEndPage(p + 1);
+                    book.pages.add(stripper.getText(doc).trim());
+                }
+            }
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static long time(Runnable pass) {
+        long t0 = SystemClock.elapsedRealtimeNanos();
+        for (int r = 0; r < ROUNDS; r++) pass.run();
+        return SystemClock.elapsedRealtimeNanos() - t0;
+    }
+
+    private static void regex(List<String> pages) {
+        for (String page : pages) regexSentences(page);
+    }
+
+    private static void segment(List<String> pages, String lang) {
+        for (String page : pages) segmented(page, lang);
+    }
+
+    /** The split the reader made before {@link SentenceSegmenter}. */
+    private static List<String> regexSentences(String page) {
+        List<String> out = new ArrayList<>();
+        Matcher m = BREAK.matcher(page);
+        int from = 0;
+        while (true) {
+            boolean found = m.find();
+            String s = page.substring(from, found ? m.start() : page.length()).trim();
+            s = s.replaceAll("\\s+", " ");
+            if (!s.isEmpty()) out.add(s);
+            if (!found) break;
+            from = m.end();
+        }
+        return out;
+    }
+
+    // Strings are built as well, as the regex split builds them too
+    private static List<String> segmented(String page, String lang) {
+        int[] r = SentenceSegmenter.segment(page, lang, NO_NOISE);
+        List<String> out = new ArrayList<>(r.length / 2);
+        for (int i = 0; i < r.length; i += 2) out.add(SentenceSegmenter.text(page, r[i], r[i + 1]));
+        return out;
+    }
+}
@@ -2,11 +2,15 @@ package com.doctell.app;
 
 import android.util.Log;
 
+import com.doctell.app.model.pdf.PdfBoxPrewarm;
+
 public class DocTellApp extends android.app.Application {
     @Override
     public void onCreate() {
         super.onCreate();
         com.tom_roush.pdfbox.android.PDFBoxResourceLoader.init(getApplicationContext());
         Log.d("DocTellApp", "PDFBoxResourceLoader.init()");
+        // fonts, glyph list and CMaps load in the background instead of on the first page
+        PdfBoxPrewarm.start();
     }
 }
@@ -32,19 +32,18 @@ import com.doctell.app.model.analytics.DocTellAnalytics;
 import com.doctell.app.model.analytics.DocTellCrashlytics;
 import com.doctell.app.model.entity.Book;
 import com.doctell.app.model.repository.BookStorage;
+import com.doctell.app.model.pdf.PdfDocuments;
 import com.doctell.app.model.pdf.PdfPreviewHelper;
 import com.doctell.app.model.utils.BookSorter;
 import com.doctell.app.model.utils.PermissionHelper;
 import com.doctell.app.model.voice.LocalTtsEngine;
 import com.doctell.app.model.voice.TtsEngineStrategy;
 import com.doctell.app.view.ItemView;
-import com.tom_roush.pdfbox.io.MemoryUsageSetting;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 import com.tom_roush.pdfbox.pdmodel.PDDocumentInformation;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -238,8 +237,8 @@ public class MainActivity extends AppCompatActivity {
                         }
                     }
 
-                    String title = safeTitleFromPdfOrName(uri);
                     String localPath = PdfPreviewHelper.ensureLocalCopy(this,uri);
+                    String title = safeTitleFromPdfOrName(localPath);
                     int screenW = getResources().getDisplayMetrics().widthPixels;
                     int thumbW = Math.min(screenW / 2, 480);
 
@@ -284,9 +283,8 @@ public class MainActivity extends AppCompatActivity {
         refreshGrid();
     }
 
-    private String safeTitleFromPdfOrName(Uri uri) {
-        try (InputStream in = getContentResolver().openInputStream(uri);
-             PDDocument doc = PDDocument.load(in, MemoryUsageSetting.setupTempFileOnly())) {
+    private String safeTitleFromPdfOrName(String localPath) {
+        try (PDDocument doc = PdfDocuments.open(this, new File(localPath))) {
 
             PDDocumentInformation info = doc.getDocumentInformation();
             if (info != null) {
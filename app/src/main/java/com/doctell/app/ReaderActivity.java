@@ -9,21 +9,20 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
 import android.graphics.RectF;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.pdf.PdfRenderer;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.ParcelFileDescriptor;
 import android.content.ComponentName;
 import android.content.ServiceConnection;
 import android.os.IBinder;
 import android.support.v4.media.session.MediaControllerCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
@@ -46,13 +45,16 @@ import com.doctell.app.model.analytics.DocTellAnalytics;
 import com.doctell.app.model.analytics.DocTellCrashlytics;
 import com.doctell.app.model.entity.ChapterItem;
 import com.doctell.app.model.entity.Book;
+import com.doctell.app.model.pdf.PageGeometry;
 import com.doctell.app.model.pdf.PageLifecycleManager;
+import com.doctell.app.model.pdf.PageModel;
+import com.doctell.app.model.pdf.PageTaskScheduler;
 import com.doctell.app.model.repository.BookStorage;
 import com.doctell.app.model.utils.ChapterLoader;
 import com.doctell.app.model.pdf.PdfLoader;
-import com.doctell.app.model.pdf.PdfPreviewHelper;
 import com.doctell.app.model.utils.OptionsDialog;
 import com.doctell.app.model.utils.PermissionHelper;
+import com.doctell.app.model.voice.BufferedTtsEngine;
 import com.doctell.app.model.voice.HighlightListener;
 import com.doctell.app.model.voice.ReaderController;
 import com.doctell.app.model.voice.TtsEngineStrategy;
@@ -62,20 +64,26 @@ import com.doctell.app.model.voice.notPublic.TtsEngineProvider;
 import com.doctell.app.view.HighlightOverlayView;
 import com.doctell.app.view.ImageScale;
 import com.google.firebase.analytics.FirebaseAnalytics;
-import com.tom_roush.pdfbox.pdmodel.PDDocument;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ReaderActivity extends AppCompatActivity implements HighlightListener, ReaderController.MediaNav {
     private ImageView pdfImage;
     private ProgressBar loadingBar;
     private Button btnNext, btnPrev, btnTTS, btnOptions;
     private TextView pageIndicator;
-    private ExecutorService exec;
+    private PageTaskScheduler scheduler;
+    // page models and layout can wait on PDFBox, so they never run on the render worker
+    private PageTaskScheduler modelScheduler;
+    private static final String TASK_RENDER = "render";
+    private static final String TASK_PREFETCH = "prefetch";
+    private static final String TASK_HIGHLIGHT = "highlight";
+    private static final String TASK_TTS_INIT = "tts_init";
+    private static final String TASK_WORD_TAP = "word_tap";
+    // how far from a word a press still picks it, in page points
+    private static final float WORD_TAP_SLOP_PT = 12f;
     private Handler main;
     private int totalPages;
     private Book currentBook;
@@ -87,9 +95,13 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
     private HighlightOverlayView highlightOverlay;
     private ReaderService readerService;
     private boolean isServiceBound = false;
-    private PdfRenderer renderer;
-    private ParcelFileDescriptor pfd;
-    private PDDocument doc;
+    private PdfLoader.PdfSession session;
+    private PageGeometry pageGeometry; // null until the session's document is parsed
+    private final Matrix pageMatrix = new Matrix();
+    private Bitmap shownBitmap; // page on screen, for the matrix once the geometry arrives
+    private int shownPage = -1;
+    private final float[] wordBounds = new float[4];
+    private final float[] tapPoint = new float[2];
     private TtsEngineStrategy ttsEngine;
     private MediaControllerCompat mediaController;
 
@@ -130,7 +142,7 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
 
             isServiceBound = true;
 
-            readerService.initBook(currentBook, doc, pfd, renderer);
+            readerService.initBook(currentBook, session);
 
             try {
                 totalPages = readerService.getPageCount();
@@ -211,7 +223,8 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
 
         highlightOverlay = findViewById(R.id.highlightOverlay);
 
-        exec = Executors.newSingleThreadExecutor();
+        scheduler = new PageTaskScheduler("ReaderRender");
+        modelScheduler = new PageTaskScheduler("ReaderModel");
         main = new Handler(Looper.getMainLooper());
         ensureTtsInit();
 
@@ -284,12 +297,6 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
 
         chapterLoader = new ChapterLoader();
         chapters = new ArrayList<>();
-        chapterLoader.loadChaptersAsync(currentBook.getLocalPath(), loadedChapters -> {
-            chapters.clear();
-            chapters.addAll(loadedChapters);
-            btnOptions.setEnabled(chapters != null);
-            Log.d("ChapterLoader", "Loaded " + chapters.size() + " chapters");
-        });
 
         ImageScale imageScale = new ImageScale(pdfImage, this, new ImageScale.TapNavigator() {
             @Override
@@ -310,6 +317,10 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
                     showNextPage();
                 }
             }
+            @Override
+            public void onLongPress(float x, float y) {
+                readFromPoint(x, y);
+            }
         });
         pdfImage.setOnTouchListener((view, motionEvent) -> {
             imageScale.onTouch(motionEvent);
@@ -322,8 +333,9 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
 
     private void ensureTtsInit() {
         if (ttsEngine == null) {
-            ttsEngine = TtsEngineProvider.getEngine(getApplicationContext());
-            exec.execute(() -> {
+            ttsEngine = BufferedTtsEngine.select(getApplicationContext(),
+                    TtsEngineProvider.getEngine(getApplicationContext()));
+            scheduler.submit(PageTaskScheduler.Priority.VISIBLE, TASK_TTS_INIT, ticket -> {
                 ttsEngine.init(getApplicationContext());
             });
         }
@@ -401,10 +413,24 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
     }
 
     private void useLoadedSession(PdfLoader.PdfSession session) {
-        renderer = session.renderer;
-        doc = session.doc;
-        pfd = session.pfd;
+        this.session = session;
         totalPages = session.pageCount;
+        // the page shows from the renderer alone; highlights and chapters follow the document
+        session.onDocumentReady(() -> {
+            if (this.session != session) return;
+            pageGeometry = session.getGeometry();
+            // the first page went up with an identity matrix; give it the real one now
+            if (shownBitmap != null) {
+                updatePageMatrix(shownPage, shownBitmap);
+                highlightOverlay.invalidate();
+            }
+        });
+        chapterLoader.loadChaptersAsync(session, loadedChapters -> {
+            chapters.clear();
+            chapters.addAll(loadedChapters);
+            btnOptions.setEnabled(chapters != null);
+            Log.d("ChapterLoader", "Loaded " + chapters.size() + " chapters");
+        });
         // Start + bind service
         Intent intent = new Intent(ReaderActivity.this, ReaderService.class);
         startService(intent); // idempotent
@@ -495,33 +521,34 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
             return;
         }
         PageLifecycleManager pageManager = readerService.getPageLifecycleManager();
-        if (!pageManager.canStartPageLoad(page)) {
-            Log.w("ReaderActivity", "Page load blocked: " + pageManager.getStateString());
-            return;
-        }
+        // a load still in flight is not a reason to refuse: its render is superseded below
         pageManager.startPageLoad(page);
         ttsStartedOnPage = false;
         readerService.setPage(page);
+
+        DisplayMetrics dm = pdfImage.getResources().getDisplayMetrics();
+        int widthPx = pdfImage.getWidth();
+        Bitmap cached = readerService.peekPageBitmap(page, dm, widthPx);
+        if (cached != null) {
+            scheduler.cancel(TASK_RENDER);
+            showLoading(false);
+            onPageBitmapReady(page, cached, autoSpeak, pageManager);
+            return;
+        }
+
         showLoading(true);
-        exec.execute(() -> {
+        scheduler.cancelAll(PageTaskScheduler.Priority.PREFETCH);
+        scheduler.submit(PageTaskScheduler.Priority.VISIBLE, TASK_RENDER, ticket -> {
             try {
-                Bitmap bmp = readerService.getPageBitmap(
-                        pdfImage.getResources().getDisplayMetrics(),
-                        pdfImage.getWidth()
-                );
+                Bitmap bmp = readerService.getPageBitmap(dm, widthPx);
+                if (ticket.isCancelled()) return; // a newer page was asked for meanwhile
                 runOnUiThread(() -> {
                     showLoading(false);
                     if (!pageManager.isCurrentPage(page)) {
                         Log.w("ReaderActivity", "Page changed during render, skipping UI update");
                         return;
                     }
-                    pdfImage.setImageBitmap(bmp);
-                    pageIndicator.setText((page + 1) + " / " + totalPages);
-                    pageManager.markPageReady(page);
-                    if (autoSpeak && isSpeaking) {
-                        DocTellAnalytics.autoPageChanged(getApplicationContext(), currentBook, page);
-                        speakPage();
-                    }
+                    onPageBitmapReady(page, bmp, autoSpeak, pageManager);
                 });
             } catch (IOException e) {
                 Log.e("ReaderActivity", "Failed to render page", e);
@@ -531,6 +558,84 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
         });
     }
 
+    private void onPageBitmapReady(int page, Bitmap bmp, boolean autoSpeak,
+                                   PageLifecycleManager pageManager) {
+        pdfImage.setImageBitmap(bmp);
+        readerService.onPageBitmapShown(bmp);
+        shownBitmap = bmp;
+        shownPage = page;
+        updatePageMatrix(page, bmp);
+        pageIndicator.setText((page + 1) + " / " + totalPages);
+        pageManager.markPageReady(page);
+        if (autoSpeak && isSpeaking) {
+            DocTellAnalytics.autoPageChanged(getApplicationContext(), currentBook, page);
+            speakPage();
+        }
+        prefetchNeighboursWhenIdle(page);
+    }
+
+    /** Starts reading at the sentence holding the word under a press, given in view pixels. */
+    private void readFromPoint(float x, float y) {
+        if (!isServiceBound || readerService == null || currentBook == null) return;
+        tapPoint[0] = x;
+        tapPoint[1] = y;
+        if (!highlightOverlay.mapViewToPage(tapPoint)) return;
+        float px = tapPoint[0], py = tapPoint[1];
+        int page = currentBook.getLastPage();
+        modelScheduler.submit(PageTaskScheduler.Priority.VISIBLE, TASK_WORD_TAP, ticket -> {
+            PageModel model;
+            try {
+                model = readerService.getPageModel(page);
+            } catch (IOException e) {
+                Log.e("ReaderActivity", "Failed to load page model for word lookup", e);
+                return;
+            }
+            int sentence = model.sentenceOfWord(model.wordAtPoint(px, py, WORD_TAP_SLOP_PT));
+            if (sentence < 0 || ticket.isCancelled()) return;
+            main.post(() -> {
+                if (currentBook.getLastPage() != page || readerService == null) return;
+                currentBook.setSentence(sentence);
+                if (isSpeaking) {
+                    readerService.readFromSentence(sentence);
+                } else {
+                    ttsStartedOnPage = true;
+                    speakPage();
+                }
+            });
+        });
+    }
+
+    /** Page points to bitmap pixels for the overlay; highlights themselves stay in page points. */
+    private void updatePageMatrix(int page, Bitmap bmp) {
+        if (pageGeometry == null || !pageGeometry.has(page)) return;
+        pageMatrix.setScale(
+                bmp.getWidth() / pageGeometry.getWidth(page),
+                bmp.getHeight() / pageGeometry.getHeight(page));
+        highlightOverlay.setPageMatrix(pageMatrix);
+    }
+
+    /** Renders the next and previous page into the cache once the UI has nothing else to do. */
+    private void prefetchNeighboursWhenIdle(int page) {
+        Looper.myQueue().addIdleHandler(() -> {
+            ReaderService service = readerService;
+            if (scheduler == null || scheduler.isShutdown() || service == null) return false;
+            if (currentBook == null || currentBook.getLastPage() != page) return false;
+            DisplayMetrics dm = pdfImage.getResources().getDisplayMetrics();
+            int widthPx = pdfImage.getWidth();
+            scheduler.submit(PageTaskScheduler.Priority.PREFETCH, TASK_PREFETCH, ticket -> {
+                for (int p : new int[]{page + 1, page - 1}) {
+                    if (ticket.isCancelled() || currentBook.getLastPage() != page) return;
+                    try {
+                        service.prefetchPageBitmap(p, dm, widthPx);
+                    } catch (IOException e) {
+                        Log.w("ReaderActivity", "Prefetch of page " + p + " failed", e);
+                    }
+                }
+            });
+            return false;
+        });
+    }
+
     private void toggleTTS() {
         int pageIndex = currentBook.getLastPage();
         if (!isSpeaking) {
@@ -575,14 +680,13 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
         if (!PermissionHelper.cheekNotificationPermission(this)) {
             return;
         }
-        TtsEngineStrategy engine = TtsEngineProvider.getEngine(getApplicationContext());
+        TtsEngineStrategy engine = BufferedTtsEngine.select(getApplicationContext(),
+                TtsEngineProvider.getEngine(getApplicationContext()));
         showLoading(true);
         readerService.startReading(
                 currentBook,
                 engine,
-                doc,
-                pfd,
-                renderer
+                session
         );
         showLoading(false);
     }
@@ -630,42 +734,29 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
         if (!isServiceBound || readerService == null) {
             return;
         }
-        exec.execute(() -> {
+        int currentPage = currentBook.getLastPage();
+        // only the sentence being spoken matters; older highlight work is dropped
+        modelScheduler.cancelAll(PageTaskScheduler.Priority.HIGHLIGHT);
+        modelScheduler.submit(PageTaskScheduler.Priority.HIGHLIGHT,
+                TASK_HIGHLIGHT + ":" + currentPage + ":" + index, ticket -> {
             PageLifecycleManager pageManager = readerService.getPageLifecycleManager();
-            int currentPage = currentBook.getLastPage();
+            // checked before the model is loaded, which may take a while
+            if (ticket.isCancelled() || currentBook.getLastPage() != currentPage) return;
             if (!pageManager.canProcessChunkStart(currentPage, index)) {
                 Log.d("ReaderActivity", "Orphaned chunk dropped: page=" + currentPage +
                         ", chunk=" + index + ". " + pageManager.getStateString());
                 return;
             }
             pageManager.startSpeakingChunk(currentPage, index);
-            BitmapDrawable drawable = (BitmapDrawable) pdfImage.getDrawable();
-            if (drawable == null) return;
-            Bitmap bitmap = drawable.getBitmap();
-            if (bitmap == null || renderer == null || doc == null) return;
-
-            int bmpW = bitmap.getWidth();
-            int bmpH = bitmap.getHeight();
-            int pageW, pageH;
-            PdfRenderer.Page page = null;
-
+            // page points; the overlay maps them onto the bitmap and the zoom
+            List<RectF> rects;
             try {
-                synchronized(renderer) {
-                    page = renderer.openPage(currentBook.getLastPage());
-                }
-                pageW = page.getWidth();
-                pageH = page.getHeight();
-            } finally {
-                if (page != null) {
-                    page.close();
-                }
-            }
-            List<RectF> rects = PdfPreviewHelper.getRectsForSentence(
-                    doc, currentBook.getLastPage(), text, bmpW, bmpH, pageW, pageH
-            );
-            for (RectF r : rects) {
-                r.offset(0, -r.height());
+                rects = readerService.getSentenceRects(currentPage, index, text);
+            } catch (IOException e) {
+                Log.e("ReaderActivity", "Failed to load page model for highlight", e);
+                return;
             }
+            if (ticket.isCancelled()) return;
             main.post(()->{
                 currentBook.setSentence(index);
                 highlightOverlay.setHighlights(rects);
@@ -673,6 +764,21 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
         });
     }
 
+    @Override
+    public void onChunkRange(int index, String text, int start, int end) {
+        if (!isServiceBound || readerService == null) return;
+        // main thread at speech rate: only a model the lookahead already built, no allocation
+        PageModel model = readerService.peekPageModel(currentBook.getLastPage());
+        if (model == null || index >= model.getSentenceCount()
+                || !text.equals(model.getSentences().get(index))) {
+            return;
+        }
+        int word = model.wordAtSpokenOffset(index, start);
+        if (word >= 0 && model.getWordBounds(word, wordBounds)) {
+            highlightOverlay.setWordHighlight(wordBounds[0], wordBounds[1], wordBounds[2], wordBounds[3]);
+        }
+    }
+
     @Override
     public void onChunkDone(int index, String text) {
         if (isServiceBound && readerService != null) {
@@ -748,7 +854,8 @@ public class ReaderActivity extends AppCompatActivity implements HighlightListen
             unbindService(serviceConnection);
             isServiceBound = false;
         }
-        if (exec != null) exec.shutdownNow();
+        if (scheduler != null) scheduler.shutdown();
+        if (modelScheduler != null) modelScheduler.shutdown();
         if (chapterLoader != null) chapterLoader.shutdown();
 
         PdfLoader.getInstance(this).closeCurrent();
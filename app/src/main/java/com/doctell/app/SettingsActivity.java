@@ -29,6 +29,7 @@ import com.doctell.app.model.entity.Prefs;
 import com.doctell.app.model.analytics.DocTellAnalytics;
 import com.doctell.app.model.analytics.DocTellCrashlytics;
 import com.doctell.app.model.voice.CloudTtsEngine;
+import com.doctell.app.model.voice.RingBudget;
 import com.doctell.app.model.voice.TtsEngineStrategy;
 import com.doctell.app.model.voice.TtsWrapper;
 import com.doctell.app.model.voice.media.ReaderMediaController;
@@ -43,13 +44,15 @@ public class SettingsActivity extends AppCompatActivity {
     private Spinner spLang, spVoice;
     private TtsWrapper ttsHelper;
     private SeekBar seekRate;
-    private TextView txtRateValue;
-    private Switch swAnalytics, swCrashlytics;
+    private TextView txtRateValue, txtBufferDepth, txtBufferMemory;
+    private SeekBar seekBufferDepth, seekBufferMemory;
+    private Switch swAnalytics, swCrashlytics, swBufferedAudio;
     private ProgressBar loadingBarSettings;
     private Button btnOcean;
     private int initIndex = 0;
     private int initVoice = 0;
     private Context app;
+    private static final long MB = 1024L * 1024;
 
     private final BroadcastReceiver ttsStateReceiver = new BroadcastReceiver() {
         @Override
@@ -80,6 +83,11 @@ public class SettingsActivity extends AppCompatActivity {
         txtRateValue = findViewById(R.id.txtRateValue);
         swAnalytics   = findViewById(R.id.swAnalytics);
         swCrashlytics = findViewById(R.id.swCrashlytics);
+        swBufferedAudio = findViewById(R.id.swBufferedAudio);
+        txtBufferDepth = findViewById(R.id.txtBufferDepth);
+        txtBufferMemory = findViewById(R.id.txtBufferMemory);
+        seekBufferDepth = findViewById(R.id.seekBufferDepth);
+        seekBufferMemory = findViewById(R.id.seekBufferMemory);
         loadingBarSettings = findViewById(R.id.loadingSettings);
         btnOcean = findViewById(R.id.btnOcean);
 
@@ -183,6 +191,60 @@ public class SettingsActivity extends AppCompatActivity {
             public void onStopTrackingTouch(SeekBar seekBar) {}
         });
 
+        swBufferedAudio.setChecked(prefs.getBoolean(Prefs.BUFFERED_AUDIO.toString(), false));
+        swBufferedAudio.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                prefs.edit().putBoolean(Prefs.BUFFERED_AUDIO.toString(), isChecked)
+                        .apply();
+                showBufferSettings(isChecked);
+                Intent intent = new Intent(ReaderService.ACTION_UPDATE_TTS_ENGINE);
+                intent.setPackage(getPackageName());
+                sendBroadcast(intent);
+            }
+        });
+        showBufferSettings(swBufferedAudio.isChecked());
+
+        // depth in chunks from 1, memory in MB from 1
+        int savedDepth = prefs.getInt(Prefs.BUFFER_DEPTH.toString(), RingBudget.DEFAULT_DEPTH);
+        long savedMemory = prefs.getLong(Prefs.BUFFER_MEMORY.toString(), RingBudget.DEFAULT_MEMORY_CEILING);
+        txtBufferDepth.setText(getString(R.string.pref_buffer_depth, savedDepth));
+        txtBufferMemory.setText(getString(R.string.pref_buffer_memory, (int) (savedMemory / MB)));
+        seekBufferDepth.setProgress(savedDepth - 1);
+        seekBufferMemory.setProgress((int) (savedMemory / MB) - 1);
+
+        seekBufferDepth.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                txtBufferDepth.setText(getString(R.string.pref_buffer_depth, progress + 1));
+            }
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                prefs.edit().putInt(Prefs.BUFFER_DEPTH.toString(), seekBar.getProgress() + 1).apply();
+                Intent intent = new Intent(ReaderService.ACTION_UPDATE_TTS_ENGINE);
+                intent.setPackage(getPackageName());
+                sendBroadcast(intent);
+            }
+        });
+
+        seekBufferMemory.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                txtBufferMemory.setText(getString(R.string.pref_buffer_memory, progress + 1));
+            }
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                prefs.edit().putLong(Prefs.BUFFER_MEMORY.toString(), (seekBar.getProgress() + 1) * MB).apply();
+                Intent intent = new Intent(ReaderService.ACTION_UPDATE_TTS_ENGINE);
+                intent.setPackage(getPackageName());
+                sendBroadcast(intent);
+            }
+        });
+
         boolean analyticsEnabled   = prefs.getBoolean(Prefs.ANALYTICS_ENABLED.toString(), true);
         boolean crashlyticsEnabled = prefs.getBoolean(Prefs.CRASHLYTICS_ENABLED.toString(), true);
         swAnalytics.setChecked(analyticsEnabled);
@@ -211,6 +273,14 @@ public class SettingsActivity extends AppCompatActivity {
         });
     }
 
+    private void showBufferSettings(boolean on) {
+        int visibility = on ? View.VISIBLE : View.GONE;
+        txtBufferDepth.setVisibility(visibility);
+        seekBufferDepth.setVisibility(visibility);
+        txtBufferMemory.setVisibility(visibility);
+        seekBufferMemory.setVisibility(visibility);
+    }
+
     private void setSpLangText(String[] values, String value){
         for (int i = 0; i < values.length; i++) {
             if(values[i].equals(value)){
@@ -11,11 +11,4 @@ public enum Noise {
         }
         return s;
     }
-
-    public static boolean isNoise(String str){
-        for(Noise noise : Noise.values()){
-            if(str.equals(noise.toString()))return true;
-        }
-        return false;
-    }
 }
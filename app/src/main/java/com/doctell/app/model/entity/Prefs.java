@@ -12,7 +12,11 @@ public enum Prefs {
     ANALYTICS_ENABLED,
     CRASHLYTICS_ENABLED,
     PERMISSIONS_ON_START,
-    STEP_LENGTH;
+    STEP_LENGTH,
+    BUFFERED_AUDIO,
+    BUFFER_DEPTH,
+    BUFFER_MEMORY,
+    NOISE_PATTERNS;
 
     @NonNull
     @Override
@@ -28,6 +32,10 @@ public enum Prefs {
              case CRASHLYTICS_ENABLED: s = "firebase_crashlytics_enabled"; break;
              case PERMISSIONS_ON_START: s = "permissions_shown"; break;
              case STEP_LENGTH: s = "step_length"; break;
+             case BUFFERED_AUDIO: s = "pref_buffered_audio"; break;
+             case BUFFER_DEPTH: s = "pref_buffer_depth"; break;
+             case BUFFER_MEMORY: s = "pref_buffer_memory"; break;
+             case NOISE_PATTERNS: s = "pref_noise_patterns"; break;
         };
          return s;
     }
@@ -0,0 +1,76 @@
+package com.doctell.app.model.pdf;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Page-sized ARGB_8888 bitmaps waiting to be rendered into again, bucketed by dimensions.
+ * Page flips then reuse a buffer instead of allocating several megabytes each time.
+ */
+public final class BitmapPool {
+
+    private static BitmapPool instance;
+
+    public static synchronized BitmapPool getInstance(Context ctx) {
+        if (instance == null) {
+            ActivityManager am = (ActivityManager) ctx.getApplicationContext()
+                    .getSystemService(Context.ACTIVITY_SERVICE);
+            int memoryClassMb = am != null ? am.getMemoryClass() : 64;
+            instance = new BitmapPool(memoryClassMb * 1024L * 1024L / 16);
+        }
+        return instance;
+    }
+
+    private final Map<Long, ArrayDeque<Bitmap>> buckets = new HashMap<>();
+    private final long maxBytes;
+    private long bytes;
+
+    private BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    /** A bitmap of exactly this size; contents are undefined, the caller erases it. */
+    public Bitmap acquire(int width, int height) {
+        synchronized (this) {
+            ArrayDeque<Bitmap> bucket = buckets.get(key(width, height));
+            while (bucket != null && !bucket.isEmpty()) {
+                Bitmap bmp = bucket.poll();
+                bytes -= bmp.getAllocationByteCount();
+                if (!bmp.isRecycled()) return bmp;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /** Hands a bitmap back; it must no longer be drawn anywhere. */
+    public synchronized void release(Bitmap bmp) {
+        if (bmp == null || bmp.isRecycled() || !bmp.isMutable()
+                || bmp.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        int size = bmp.getAllocationByteCount();
+        if (bytes + size > maxBytes) return; // full, let the GC have it
+        long k = key(bmp.getWidth(), bmp.getHeight());
+        ArrayDeque<Bitmap> bucket = buckets.get(k);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(k, bucket);
+        }
+        bucket.add(bmp);
+        bytes += size;
+    }
+
+    public synchronized void clear() {
+        buckets.clear();
+        bytes = 0;
+    }
+}
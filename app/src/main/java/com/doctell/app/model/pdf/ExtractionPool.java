@@ -0,0 +1,136 @@
+package com.doctell.app.model.pdf;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * A few independent {@link PDDocument} handles on the same local file, so text extraction can
+ * run on several cores. A PDDocument is not thread-safe; each handle is used by one thread at
+ * a time and handed back when the work is done.
+ * <p>
+ * Handles are opened on first demand through {@link PdfDocuments}, which bounds the scratch
+ * memory of each. The pool size comes from {@link #defaultSize(Context)}.
+ */
+public final class ExtractionPool implements Closeable {
+
+    private static final String TAG = "ExtractionPool";
+
+    static final int MAX_HANDLES = 4;
+    // rough heap a handle needs for font and content stream caches while a page is stripped
+    private static final int MB_PER_HANDLE = 48;
+
+    /** Work done on one handle. */
+    public interface Extraction<T> {
+        T run(PDDocument doc) throws IOException;
+    }
+
+    private final Context appContext;
+    private final File file;
+    private final int size;
+    private final ArrayDeque<PDDocument> idle = new ArrayDeque<>();
+    private int opened;
+    private boolean closed;
+
+    public ExtractionPool(Context ctx, String bookLocalPath, int size) {
+        this.appContext = ctx.getApplicationContext();
+        this.file = new File(bookLocalPath);
+        this.size = Math.max(1, size);
+    }
+
+    /** One handle per spare core, as far as the app's heap allows; one on low-RAM devices. */
+    public static int defaultSize(Context ctx) {
+        ActivityManager am = (ActivityManager) ctx.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am != null && am.isLowRamDevice()) return 1;
+        int byCores = Runtime.getRuntime().availableProcessors() - 1;
+        int byMemory = (am != null ? am.getMemoryClass() : 64) / MB_PER_HANDLE;
+        return Math.max(1, Math.min(MAX_HANDLES, Math.min(byCores, byMemory)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Runs the work on a free handle, waiting for one if all are busy. */
+    public <T> T extract(Extraction<T> work) throws IOException {
+        PDDocument doc = acquire();
+        try {
+            return work.run(doc);
+        } finally {
+            release(doc);
+        }
+    }
+
+    private PDDocument acquire() throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (closed) throw new IOException("Extraction pool closed");
+                PDDocument doc = idle.poll();
+                if (doc != null) return doc;
+                if (opened < size) {
+                    opened++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for a document handle");
+                }
+            }
+        }
+        // opening parses the xref and can take a while, so not under the lock
+        try {
+            PDDocument doc = PdfDocuments.open(appContext, file);
+            Log.d(TAG, "Opened handle " + opened + "/" + size);
+            return doc;
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                opened--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(PDDocument doc) {
+        synchronized (this) {
+            if (!closed) {
+                idle.push(doc);
+                notifyAll();
+                return;
+            }
+            opened--;
+        }
+        closeQuietly(doc);
+    }
+
+    /** Closes the idle handles now; handles in use are closed when they are handed back. */
+    @Override
+    public void close() {
+        ArrayDeque<PDDocument> toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            opened -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        for (PDDocument doc : toClose) closeQuietly(doc);
+    }
+
+    private static void closeQuietly(PDDocument doc) {
+        try {
+            doc.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,118 @@
+package com.doctell.app.model.pdf;
+
+import com.tom_roush.pdfbox.io.RandomAccessRead;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * PDFBox input over a read-only memory map of a local file.
+ * <p>
+ * Parsing the xref and the page tree is mostly seeks and reads of a few bytes; on a map each of
+ * those is an array access instead of a buffered stream refill, and the pages live in the page
+ * cache rather than on the Java heap. Only for files under 2 GB, which is every book we keep.
+ */
+public final class MappedRandomAccessRead implements RandomAccessRead {
+
+    private MappedByteBuffer map;
+    private final long length;
+
+    public MappedRandomAccessRead(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Too large to map: " + file.getName());
+            }
+            // the map stays valid after the channel is closed
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+
+    private MappedByteBuffer open() throws IOException {
+        MappedByteBuffer m = map;
+        if (m == null) throw new IOException("RandomAccessRead already closed");
+        return m;
+    }
+
+    @Override
+    public int read() throws IOException {
+        MappedByteBuffer m = open();
+        return m.hasRemaining() ? m.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int len) throws IOException {
+        MappedByteBuffer m = open();
+        if (len == 0) return 0;
+        int n = Math.min(len, m.remaining());
+        if (n == 0) return -1;
+        m.get(b, offset, n);
+        return n;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        return open().position();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        if (position < 0) throw new IOException("Invalid position " + position);
+        open().position((int) Math.min(position, length));
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return map == null;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        MappedByteBuffer m = open();
+        return m.hasRemaining() ? m.get(m.position()) & 0xFF : -1;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(getPosition() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int len) throws IOException {
+        MappedByteBuffer m = open();
+        if (len > m.remaining()) throw new IOException("Premature end of file");
+        byte[] b = new byte[len];
+        m.get(b);
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        return !open().hasRemaining();
+    }
+
+    @Override
+    public int available() throws IOException {
+        return open().remaining();
+    }
+
+    /** Drops the reference; the mapping goes away once the buffer is collected. */
+    @Override
+    public void close() {
+        map = null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.doctell.app.model.pdf;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Rendered pages, keyed by page index and target width, so flipping back and forth
+ * does not render (and allocate) the same page again.
+ * Sized to an eighth of the app's memory class. Evicted pages go back to the {@link BitmapPool},
+ * except the one on screen, which follows once something else is displayed.
+ */
+public class PageBitmapCache {
+
+    private final LruCache<Long, Bitmap> cache;
+    private final BitmapPool pool;
+
+    private Bitmap displayed;
+    private Bitmap evictedWhileDisplayed;
+
+    public PageBitmapCache(Context ctx, BitmapPool pool) {
+        this.pool = pool;
+        ActivityManager am = (ActivityManager) ctx.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = am != null ? am.getMemoryClass() : 64;
+        int maxBytes = memoryClassMb * 1024 * 1024 / 8;
+        cache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) retire(oldValue);
+            }
+        };
+    }
+
+    private static long key(int pageIndex, int widthPx) {
+        return ((long) pageIndex << 32) | (widthPx & 0xFFFFFFFFL);
+    }
+
+    public Bitmap get(int pageIndex, int widthPx) {
+        return cache.get(key(pageIndex, widthPx));
+    }
+
+    public void put(int pageIndex, int widthPx, Bitmap bmp) {
+        cache.put(key(pageIndex, widthPx), bmp);
+    }
+
+    /** The page view now shows {@code bmp}; the previous one may be reused if it left the cache. */
+    public synchronized void setDisplayed(Bitmap bmp) {
+        Bitmap previous = displayed;
+        displayed = bmp;
+        if (previous != bmp && previous == evictedWhileDisplayed) {
+            evictedWhileDisplayed = null;
+            pool.release(previous);
+        }
+    }
+
+    private synchronized void retire(Bitmap bmp) {
+        if (bmp == displayed) {
+            evictedWhileDisplayed = bmp;
+        } else {
+            pool.release(bmp);
+        }
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+}
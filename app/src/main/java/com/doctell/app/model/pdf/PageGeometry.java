@@ -0,0 +1,59 @@
+package com.doctell.app.model.pdf;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * Displayed size of every page, read once from the page tree when a book opens.
+ * <p>
+ * Kept in one flat float array so asking for a page's size never opens a {@code PdfRenderer.Page}.
+ * Width and height are the crop box with rotation applied. That is the area PdfRenderer draws,
+ * and {@link PositionAwareStripper} reports word boxes in it too, relative to the crop box origin
+ * and already rotated, so a scale is all the page-to-bitmap matrix needs.
+ */
+public final class PageGeometry {
+
+    private static final int WIDTH = 0, HEIGHT = 1;
+    private static final int STRIDE = 2;
+
+    private final float[] data;
+
+    private PageGeometry(float[] data) {
+        this.data = data;
+    }
+
+    /** Walks the page tree once; no content streams are parsed. */
+    public static PageGeometry collect(PDDocument doc) {
+        int count = doc.getNumberOfPages();
+        float[] data = new float[count * STRIDE];
+        int i = 0;
+        for (PDPage page : doc.getPages()) {
+            if (i >= count) break;
+            PDRectangle crop = page.getCropBox();
+            int rotation = ((page.getRotation() % 360) + 360) % 360;
+            boolean sideways = rotation == 90 || rotation == 270;
+            int o = i * STRIDE;
+            data[o + WIDTH] = sideways ? crop.getHeight() : crop.getWidth();
+            data[o + HEIGHT] = sideways ? crop.getWidth() : crop.getHeight();
+            i++;
+        }
+        return new PageGeometry(data);
+    }
+
+    public int getPageCount() {
+        return data.length / STRIDE;
+    }
+
+    public boolean has(int pageIndex) {
+        return pageIndex >= 0 && pageIndex < getPageCount();
+    }
+
+    public float getWidth(int pageIndex) {
+        return data[pageIndex * STRIDE + WIDTH];
+    }
+
+    public float getHeight(int pageIndex) {
+        return data[pageIndex * STRIDE + HEIGHT];
+    }
+}
@@ -0,0 +1,159 @@
+package com.doctell.app.model.pdf;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Word boxes of one page as parallel primitive arrays.
+ * <p>
+ * Word {@code i} covers {@code text[start[i], end[i])} of the page text it was built with and sits
+ * in box x, y, w, h (page points, y is the baseline and grows downwards, as
+ * {@link PositionAwareStripper} reports it). {@code line} and {@code block} number the text lines
+ * and paragraphs in reading order. The same arrays are what {@link PageLayoutIndex} stores, so a
+ * page read from disk is a handful of bulk copies.
+ */
+public final class PageLayout {
+
+    public static final PageLayout EMPTY = new Builder(0).build();
+
+    final int wordCount;
+    final float[] x, y, w, h;
+    final int[] start, end;
+    final int[] line, block;
+
+    private PageLayout(int wordCount, float[] x, float[] y, float[] w, float[] h,
+                       int[] start, int[] end, int[] line, int[] block) {
+        this.wordCount = wordCount;
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+        this.start = start;
+        this.end = end;
+        this.line = line;
+        this.block = block;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getStart(int word) {
+        return start[word];
+    }
+
+    public int getEnd(int word) {
+        return end[word];
+    }
+
+    public int getLine(int word) {
+        return line[word];
+    }
+
+    public int getBlock(int word) {
+        return block[word];
+    }
+
+    /** Box of a word in page points, top-left origin, written to {@code out} as l, t, r, b. */
+    public void getBounds(int word, float[] out) {
+        out[0] = x[word];
+        out[1] = y[word] - h[word];
+        out[2] = x[word] + w[word];
+        out[3] = y[word];
+    }
+
+    /** Word strings cut from the text the offsets point into. */
+    public List<String> wordTexts(String text) {
+        List<String> out = new ArrayList<>(wordCount);
+        for (int i = 0; i < wordCount; i++) out.add(text.substring(start[i], end[i]));
+        return out;
+    }
+
+    /**
+     * Same words with offsets moved back by {@code shift} (e.g. leading whitespace trimmed from
+     * the text) and clipped to {@code textLength}; words that fall outside are dropped.
+     */
+    public PageLayout rebase(int shift, int textLength) {
+        Builder b = new Builder(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+            int s = Math.max(0, start[i] - shift);
+            int e = Math.min(textLength, end[i] - shift);
+            if (start[i] < 0 || s >= e) continue;
+            b.add(x[i], y[i], w[i], h[i], s, e, line[i], block[i]);
+        }
+        return b.build();
+    }
+
+    // ---- serialized form: count, then each array back to back, big-endian ----
+
+    int byteSize() {
+        return 4 + wordCount * (4 * 4 + 4 * 4);
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(wordCount);
+        for (float[] a : new float[][]{x, y, w, h}) {
+            for (int i = 0; i < wordCount; i++) out.putFloat(a[i]);
+        }
+        for (int[] a : new int[][]{start, end, line, block}) {
+            for (int i = 0; i < wordCount; i++) out.putInt(a[i]);
+        }
+    }
+
+    /** Reads one page record at the buffer's position with bulk gets; advances the position. */
+    static PageLayout readFrom(ByteBuffer in) {
+        int n = in.getInt();
+        float[] x = new float[n], y = new float[n], w = new float[n], h = new float[n];
+        int[] start = new int[n], end = new int[n], line = new int[n], block = new int[n];
+        for (float[] a : new float[][]{x, y, w, h}) {
+            in.asFloatBuffer().get(a);
+            in.position(in.position() + 4 * n);
+        }
+        for (int[] a : new int[][]{start, end, line, block}) {
+            in.asIntBuffer().get(a);
+            in.position(in.position() + 4 * n);
+        }
+        return new PageLayout(n, x, y, w, h, start, end, line, block);
+    }
+
+    /** Growable arrays the stripper appends words to. */
+    public static final class Builder {
+        private int n;
+        private float[] x, y, w, h;
+        private int[] start, end, line, block;
+
+        public Builder(int capacity) {
+            int c = Math.max(16, capacity);
+            x = new float[c]; y = new float[c]; w = new float[c]; h = new float[c];
+            start = new int[c]; end = new int[c]; line = new int[c]; block = new int[c];
+        }
+
+        public void add(float wx, float wy, float ww, float wh, int s, int e, int l, int b) {
+            if (n == x.length) grow();
+            x[n] = wx; y[n] = wy; w[n] = ww; h[n] = wh;
+            start[n] = s; end[n] = e; line[n] = l; block[n] = b;
+            n++;
+        }
+
+        private void grow() {
+            int c = x.length * 2;
+            x = Arrays.copyOf(x, c); y = Arrays.copyOf(y, c);
+            w = Arrays.copyOf(w, c); h = Arrays.copyOf(h, c);
+            start = Arrays.copyOf(start, c); end = Arrays.copyOf(end, c);
+            line = Arrays.copyOf(line, c); block = Arrays.copyOf(block, c);
+        }
+
+        public int size() {
+            return n;
+        }
+
+        public PageLayout build() {
+            return new PageLayout(n,
+                    Arrays.copyOf(x, n), Arrays.copyOf(y, n), Arrays.copyOf(w, n), Arrays.copyOf(h, n),
+                    Arrays.copyOf(start, n), Arrays.copyOf(end, n),
+                    Arrays.copyOf(line, n), Arrays.copyOf(block, n));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.doctell.app.model.pdf;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read side of the per-book word layout, stored next to the {@link PageTextIndex}.
+ * <p>
+ * Layout: header, a table of {@code pageCount + 1} byte offsets, then one {@link PageLayout}
+ * record per page. The file is memory-mapped, so loading a page is a few bulk copies out of
+ * the page cache and needs neither PDFBox nor a read syscall. Word offsets point into the
+ * page text of the text index built in the same pass.
+ */
+public class PageLayoutIndex implements Closeable {
+
+    private static final String TAG = "PageLayoutIndex";
+
+    static final int MAGIC = 0x44544C59; // "DTLY"
+    static final int VERSION = 1;
+    static final String EXT = ".lyt";
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final long[] offsets;
+    private final int dataStart;
+
+    private PageLayoutIndex(RandomAccessFile file, MappedByteBuffer map, long[] offsets, int dataStart) {
+        this.file = file;
+        this.map = map;
+        this.offsets = offsets;
+        this.dataStart = dataStart;
+    }
+
+    /** Layout file for a book, beside its text index. */
+    public static File layoutFileFor(Context ctx, String bookLocalPath) {
+        File idx = PageTextIndex.indexFileFor(ctx, bookLocalPath);
+        String name = idx.getName();
+        return new File(idx.getParentFile(), name.substring(0, name.length() - PageTextIndex.EXT.length()) + EXT);
+    }
+
+    public static boolean exists(Context ctx, String bookLocalPath) {
+        File f = layoutFileFor(ctx, bookLocalPath);
+        return f.exists() && f.length() > 0;
+    }
+
+    /** Maps the layout of a book, or returns null if it is missing or unreadable. */
+    public static PageLayoutIndex open(Context ctx, String bookLocalPath) {
+        File f = layoutFileFor(ctx, bookLocalPath);
+        if (!f.exists() || f.length() == 0) return null;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(f, "r");
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (map.getInt() != MAGIC || map.getInt() != VERSION) {
+                Log.w(TAG, "Stale or foreign layout, ignoring: " + f.getName());
+                raf.close();
+                f.delete();
+                return null;
+            }
+            long sourceLength = map.getLong();
+            if (sourceLength != new File(bookLocalPath).length()) {
+                Log.w(TAG, "Layout does not match document, ignoring: " + f.getName());
+                raf.close();
+                f.delete();
+                return null;
+            }
+            int pageCount = map.getInt();
+            long[] offsets = new long[pageCount + 1];
+            for (int i = 0; i <= pageCount; i++) {
+                offsets[i] = map.getLong();
+            }
+            return new PageLayoutIndex(raf, map, offsets, map.position());
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failed to open layout " + f.getName(), e);
+            if (raf != null) {
+                try { raf.close(); } catch (IOException ignored) {}
+            }
+            return null;
+        }
+    }
+
+    static int headerSize(int pageCount) {
+        return PageTextIndex.headerSize(pageCount);
+    }
+
+    public int getPageCount() {
+        return offsets.length - 1;
+    }
+
+    /** Word layout of a page, or null if the page is not in the file. */
+    public PageLayout getPageLayout(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= getPageCount()) return null;
+        if (offsets[pageIndex + 1] == offsets[pageIndex]) return PageLayout.EMPTY;
+        try {
+            // own view so concurrent readers don't share a position
+            ByteBuffer view = map.duplicate();
+            view.position(dataStart + (int) offsets[pageIndex]);
+            return PageLayout.readFrom(view);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to read layout of page " + pageIndex, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            file.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,114 @@
+package com.doctell.app.model.pdf;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prepares the {@link PageModel} (text, sentences and word boxes) of the next pages while the
+ * current one is being spoken, so a page turn only has to pick the model up from the cache.
+ * <p>
+ * How far ahead it works adapts to how long extraction takes compared to how long a page
+ * takes to speak.
+ */
+public class PageLookahead {
+
+    private static final String TAG = "PageLookahead";
+
+    static final int MIN_AHEAD = 1;
+    static final int MAX_AHEAD = 4;
+    private static final float SMOOTHING = 0.3f;
+    // longer than this and the reader probably paused mid-page
+    private static final long MAX_SPEAK_SAMPLE_MS = 10 * 60 * 1000;
+
+    private final PdfManager pdfManager;
+    private final ExecutorService worker;
+    private final Set<Integer> scheduled = new HashSet<>();
+
+    private volatile float extractMsAvg = -1f;
+    private volatile float speakMsAvg = -1f;
+    private int currentPage = -1;
+    private long pageStartedAt;
+
+    public PageLookahead(PdfManager pdfManager) {
+        this.pdfManager = pdfManager;
+        // one thread per extraction handle, so the pages ahead are stripped side by side
+        this.worker = Executors.newFixedThreadPool(pdfManager.getExtractionParallelism(), r -> {
+            Thread t = new Thread(r, "PageLookahead");
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    /** Reading moved to a page: remember when, and prepare the pages after it. */
+    public synchronized void onPageStarted(int pageIndex, int pageCount) {
+        if (pageIndex == currentPage) return;
+        currentPage = pageIndex;
+        pageStartedAt = SystemClock.elapsedRealtime();
+
+        int ahead = pagesAhead();
+        for (int p = pageIndex + 1; p <= pageIndex + ahead && p < pageCount; p++) {
+            schedule(p);
+        }
+    }
+
+    /** The whole page was spoken; feeds the speaking-time estimate. */
+    public synchronized void onPageFinished(int pageIndex) {
+        if (pageIndex != currentPage || pageStartedAt == 0) return;
+        long spokeMs = SystemClock.elapsedRealtime() - pageStartedAt;
+        pageStartedAt = 0;
+        if (spokeMs <= 0 || spokeMs > MAX_SPEAK_SAMPLE_MS) return;
+        speakMsAvg = smooth(speakMsAvg, spokeMs);
+    }
+
+    /**
+     * Enough pages to cover one page of extraction cost with speaking time, plus one spare.
+     * Without measurements yet, just the next page.
+     */
+    int pagesAhead() {
+        float extract = extractMsAvg;
+        float speak = speakMsAvg;
+        if (extract < 0 || speak <= 0) return MIN_AHEAD;
+        int ahead = (int) Math.ceil(extract / speak) + 1;
+        return Math.max(MIN_AHEAD, Math.min(MAX_AHEAD, ahead));
+    }
+
+    private void schedule(int pageIndex) {
+        if (pdfManager.peekPageModel(pageIndex) != null) return;
+        if (!scheduled.add(pageIndex)) return;
+
+        worker.execute(() -> {
+            try {
+                long start = SystemClock.elapsedRealtime();
+                pdfManager.getPageModel(pageIndex, true);
+                long took = SystemClock.elapsedRealtime() - start;
+                extractMsAvg = smooth(extractMsAvg, took);
+                Log.d(TAG, "Prepared page " + pageIndex + " in " + took
+                        + " ms, ahead=" + pagesAhead()
+                        + (PdfBoxPrewarm.isDone() ? "" : " (PDFBox still warming up)"));
+            } catch (PageTimeoutException e) {
+                // flagged early, so reading gets there to a retried page or skips it at once
+                Log.d(TAG, "Page " + pageIndex + " is over the budget, left to the retry");
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Lookahead failed for page " + pageIndex, e);
+            } finally {
+                synchronized (PageLookahead.this) {
+                    scheduled.remove(pageIndex);
+                }
+            }
+        });
+    }
+
+    private static float smooth(float avg, long sample) {
+        return avg < 0 ? sample : avg + SMOOTHING * (sample - avg);
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
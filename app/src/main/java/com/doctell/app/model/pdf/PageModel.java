@@ -0,0 +1,239 @@
+package com.doctell.app.model.pdf;
+
+import android.graphics.RectF;
+import android.util.Log;
+
+import com.doctell.app.model.voice.NoiseFilter;
+import com.doctell.app.model.voice.SentenceSegmenter;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the reader needs about one page: the text, its sentence boundaries and
+ * the word boxes with a char offset -> word index map.
+ * <p>
+ * Built from a single {@link PositionAwareStripper} pass, from the text and layout indexes
+ * without touching PDFBox, or from indexed text first with the word boxes attached by one
+ * pass the first time a highlight needs them.
+ */
+public final class PageModel {
+
+    private static final String TAG = "PageModel";
+
+    public final int pageIndex;
+    private final String text;
+    private final CharSequence spokenText; // noise lines blanked; sentences are built from it
+    private final int[] sentenceRanges;
+    private final List<String> sentences;
+
+    // word boxes in PDF units, same space as PositionAwareStripper (y grows downwards)
+    private volatile boolean hasLayout;
+    private PageLayout layout = PageLayout.EMPTY;
+    private int[] charToWord;
+    private WordGrid grid; // built on the first tap
+
+    private PageModel(int pageIndex, String text, String lang, NoiseFilter noise) {
+        this.pageIndex = pageIndex;
+        this.text = text != null ? text : "";
+        // Strings are only built for sentences that get spoken or compared
+        SentenceSegmenter.Sentences split = SentenceSegmenter.sentences(this.text, lang, noise);
+        this.spokenText = split.getText();
+        this.sentenceRanges = split.getRanges();
+        this.sentences = Collections.unmodifiableList(split);
+    }
+
+    /**
+     * Text and sentences only; word boxes come later via {@link #attachLayout}.
+     * {@code lang} picks the sentence rules and {@code noise} the lines and sentences left out,
+     * see {@link SentenceSegmenter#segment(CharSequence, String, NoiseFilter)}.
+     */
+    public static PageModel fromText(int pageIndex, String text, String lang, NoiseFilter noise) {
+        return new PageModel(pageIndex, text, lang, noise);
+    }
+
+    /** Indexed text with its indexed layout; offsets already point into {@code text}. */
+    public static PageModel fromIndex(int pageIndex, String text, PageLayout layout,
+                                      String lang, NoiseFilter noise) {
+        PageModel model = new PageModel(pageIndex, text, lang, noise);
+        model.setLayout(layout);
+        return model;
+    }
+
+    /**
+     * Text, sentences and word boxes from one stripper pass. Fails with a
+     * {@link PageTimeoutException} if the pass takes longer than {@code budgetMs}; 0 for no limit.
+     */
+    public static PageModel build(PDDocument doc, int pageIndex, String lang, NoiseFilter noise,
+                                  long budgetMs) throws IOException {
+        PositionAwareStripper stripper = strip(doc, pageIndex, budgetMs);
+        String raw = stripper.getText(doc);
+        String trimmed = raw != null ? raw.trim() : "";
+        PageModel model = new PageModel(pageIndex, trimmed, lang, noise);
+        model.setLayout(stripper.getLayout().rebase(raw != null ? raw.indexOf(trimmed) : 0, trimmed.length()));
+        return model;
+    }
+
+    /**
+     * Runs one stripper pass to add word boxes to a model made from indexed text.
+     * {@code budgetMs} as in {@link #build}.
+     */
+    public void attachLayout(PDDocument doc, long budgetMs) throws IOException {
+        if (hasLayout) return;
+        PositionAwareStripper stripper = strip(doc, pageIndex, budgetMs);
+        String raw = stripper.getText(doc);
+        String trimmed = raw != null ? raw.trim() : "";
+        if (!trimmed.equals(text)) {
+            Log.w(TAG, "Indexed text differs from page " + pageIndex + ", highlights may drift");
+        }
+        setLayout(stripper.getLayout().rebase(raw != null ? raw.indexOf(trimmed) : 0, text.length()));
+    }
+
+    private static PositionAwareStripper strip(PDDocument doc, int pageIndex, long budgetMs)
+            throws IOException {
+        PositionAwareStripper stripper = new PositionAwareStripper();
+        stripper.setAddMoreFormatting(true);
+        stripper.setStartPage(pageIndex + 1);
+        stripper.setEndPage(pageIndex + 1);
+        stripper.setTimeBudget(budgetMs);
+        return stripper;
+    }
+
+    private synchronized void setLayout(PageLayout words) {
+        int[] map = new int[text.length()];
+        Arrays.fill(map, -1);
+        for (int k = 0; k < words.wordCount; k++) {
+            int s = Math.min(text.length(), words.start[k]);
+            int e = Math.min(text.length(), words.end[k]);
+            Arrays.fill(map, s, Math.max(s, e), k);
+        }
+        layout = words;
+        grid = null;
+        charToWord = map;
+        hasLayout = true;
+    }
+
+    public boolean hasLayout() {
+        return hasLayout;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** Sentences handed to the engine; indices match the ReaderController chunks. */
+    public List<String> getSentences() {
+        return sentences;
+    }
+
+    public int getSentenceCount() {
+        return sentences.size();
+    }
+
+    public int getSentenceStart(int sentence) {
+        return sentenceRanges[sentence * 2];
+    }
+
+    public int getSentenceEnd(int sentence) {
+        return sentenceRanges[sentence * 2 + 1];
+    }
+
+    public int getWordCount() {
+        return layout.wordCount;
+    }
+
+    public PageLayout getLayout() {
+        return layout;
+    }
+
+    /** Word under a char offset of {@link #getText()}, or -1 for whitespace or no layout. */
+    public int wordAt(int charOffset) {
+        if (!hasLayout || charOffset < 0 || charOffset >= charToWord.length) return -1;
+        return charToWord[charOffset];
+    }
+
+    /**
+     * Word under a char offset of the spoken sentence, i.e. of
+     * {@code getSentences().get(sentence)} where whitespace runs count as one space.
+     * -1 for whitespace, an offset past the sentence or no layout.
+     */
+    public synchronized int wordAtSpokenOffset(int sentence, int spokenOffset) {
+        if (!hasLayout || sentence < 0 || sentence >= sentences.size() || spokenOffset < 0) return -1;
+        int start = getSentenceStart(sentence), end = getSentenceEnd(sentence);
+        int n = 0;
+        for (int c = start; c < end; c++) {
+            boolean space = isSpace(spokenText.charAt(c));
+            if (space && c > start && isSpace(spokenText.charAt(c - 1))) continue; // rest of a run
+            if (n == spokenOffset) return space ? -1 : charToWord[c];
+            n++;
+        }
+        return -1;
+    }
+
+    // same set as \\s in SentenceSegmenter.text's whitespace collapsing
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Box of one word in page points, top-left origin, written to {@code out} as l, t, r, b. */
+    public synchronized boolean getWordBounds(int word, float[] out) {
+        if (!hasLayout || word < 0 || word >= layout.wordCount) return false;
+        layout.getBounds(word, out);
+        return true;
+    }
+
+    /** Word at a point in page points, or the nearest within {@code slop}; -1 if none. */
+    public synchronized int wordAtPoint(float x, float y, float slop) {
+        if (!hasLayout) return -1;
+        if (grid == null) grid = WordGrid.build(layout);
+        return grid.wordAt(x, y, slop);
+    }
+
+    /** Sentence a word is part of, or -1 when it lies outside every sentence. */
+    public synchronized int sentenceOfWord(int word) {
+        if (!hasLayout || word < 0 || word >= layout.wordCount) return -1;
+        int c = layout.start[word];
+        int lo = 0, hi = sentences.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c < getSentenceStart(mid)) {
+                hi = mid - 1;
+            } else if (c >= getSentenceEnd(mid)) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        // between sentences (e.g. a stray symbol): read on from the next one
+        return lo < sentences.size() ? lo : -1;
+    }
+
+    /**
+     * Highlight rects for a sentence in page points, top-left origin, one per word.
+     * Same convention as {@link PdfPreviewHelper#getRectsForSentence}.
+     */
+    public synchronized List<RectF> getSentenceRects(int sentence) {
+        List<RectF> out = new ArrayList<>();
+        if (!hasLayout || sentence < 0 || sentence >= sentences.size()) return out;
+
+        int first = -1, last = -1;
+        for (int c = getSentenceStart(sentence), end = getSentenceEnd(sentence); c < end; c++) {
+            int word = charToWord[c];
+            if (word < 0) continue;
+            if (first == -1) first = word;
+            last = word;
+        }
+        if (first == -1) return out;
+
+        PageLayout l = layout;
+        for (int k = first; k <= last; k++) {
+            // word y is the baseline; the box extends upwards from it
+            out.add(new RectF(l.x[k], l.y[k] - l.h[k], l.x[k] + l.w[k], l.y[k]));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,160 @@
+package com.doctell.app.model.pdf;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Single worker for page renders and highlight work, run by priority instead of arrival order.
+ * <p>
+ * Tasks carry a key; submitting a task with a key that is still queued replaces the old one
+ * (latest wins), and a running task with that key gets its {@link Ticket} cancelled so it can
+ * drop its result. A burst of page taps therefore leaves one render queued, not one per tap.
+ * <p>
+ * A running task is never preempted, so work that can block on PDFBox (page models, word layout)
+ * goes to a scheduler of its own rather than sharing the worker with renders. Keys may name the
+ * page and sentence; {@link #cancelAll} then drops the ones a newer sentence made stale.
+ */
+public final class PageTaskScheduler {
+
+    private static final String TAG = "PageTaskScheduler";
+
+    /** Lower ordinal runs first. */
+    public enum Priority { VISIBLE, HIGHLIGHT, PREFETCH }
+
+    public interface Job {
+        void run(Ticket ticket);
+    }
+
+    /** Handed to the job; cancelled once a newer task with the same key is submitted. */
+    public static final class Ticket {
+        private volatile boolean cancelled;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static final class Task implements Comparable<Task> {
+        final Priority priority;
+        final String key;
+        final Job job;
+        final long seq;
+        final Ticket ticket = new Ticket();
+
+        Task(Priority priority, String key, Job job, long seq) {
+            this.priority = priority;
+            this.key = key;
+            this.job = job;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private final Map<String, Task> queuedByKey = new HashMap<>();
+    private final Map<String, Task> runningByKey = new HashMap<>();
+    private final Thread worker;
+    private long seq;
+    private boolean shutdown;
+
+    public PageTaskScheduler(String name) {
+        worker = new Thread(this::loop, name);
+        worker.setPriority(Thread.NORM_PRIORITY);
+        worker.start();
+    }
+
+    /** Queues a job, replacing (and cancelling) any earlier one with the same key. */
+    public synchronized Ticket submit(Priority priority, String key, Job job) {
+        if (shutdown) {
+            Ticket dead = new Ticket();
+            dead.cancelled = true;
+            return dead;
+        }
+        cancelLocked(key);
+        Task task = new Task(priority, key, job, seq++);
+        queue.add(task);
+        queuedByKey.put(key, task);
+        notifyAll();
+        return task.ticket;
+    }
+
+    public synchronized void cancel(String key) {
+        cancelLocked(key);
+    }
+
+    /** Drops everything queued at the given priority, e.g. prefetches made stale by a jump. */
+    public synchronized void cancelAll(Priority priority) {
+        queue.removeIf(t -> {
+            if (t.priority != priority) return false;
+            t.ticket.cancelled = true;
+            queuedByKey.remove(t.key);
+            return true;
+        });
+        for (Task t : runningByKey.values()) {
+            if (t.priority == priority) t.ticket.cancelled = true;
+        }
+    }
+
+    private void cancelLocked(String key) {
+        Task queued = queuedByKey.remove(key);
+        if (queued != null) {
+            queued.ticket.cancelled = true;
+            queue.remove(queued);
+        }
+        Task running = runningByKey.get(key);
+        if (running != null) running.ticket.cancelled = true;
+    }
+
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (Task t : queue) t.ticket.cancelled = true;
+            for (Task t : runningByKey.values()) t.ticket.cancelled = true;
+            queue.clear();
+            queuedByKey.clear();
+            notifyAll();
+        }
+        worker.interrupt();
+    }
+
+    private void loop() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while (queue.isEmpty() && !shutdown) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (shutdown) return;
+                task = queue.poll();
+                queuedByKey.remove(task.key);
+                runningByKey.put(task.key, task);
+            }
+
+            try {
+                if (!task.ticket.isCancelled()) task.job.run(task.ticket);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task " + task.key + " failed", e);
+            } finally {
+                synchronized (this) {
+                    if (runningByKey.get(task.key) == task) runningByKey.remove(task.key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.doctell.app.model.pdf;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.doctell.app.model.voice.NoiseFilter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read side of the per-book page text index.
+ * <p>
+ * One file per book under {@code filesDir/index}, named after the local copy in {@code docs/}.
+ * Layout: header, a table of {@code pageCount + 1} byte offsets, the UTF-8 text of every
+ * page back to back, then the hashes of the book's repeated lines (a count and that many longs,
+ * see {@link NoiseFilter.LineLearner}). The offset table is kept in memory so a page read is
+ * one seek + one read.
+ */
+public class PageTextIndex implements Closeable {
+
+    private static final String TAG = "PageTextIndex";
+
+    static final int MAGIC = 0x44544958; // "DTIX"
+    static final int VERSION = 2; // 2: repeated line hashes after the text
+    static final String DIR = "index";
+    static final String EXT = ".idx";
+
+    private final RandomAccessFile file;
+    private final long[] offsets;
+    private final long dataStart;
+    private final long[] repeatedLines;
+
+    private PageTextIndex(RandomAccessFile file, long[] offsets, long dataStart, long[] repeatedLines) {
+        this.file = file;
+        this.offsets = offsets;
+        this.dataStart = dataStart;
+        this.repeatedLines = repeatedLines;
+    }
+
+    /** Index file for a book, keyed by the name of its local copy. */
+    public static File indexFileFor(Context ctx, String bookLocalPath) {
+        File dir = new File(ctx.getFilesDir(), DIR);
+        if (!dir.exists()) dir.mkdirs();
+        String name = new File(bookLocalPath).getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        return new File(dir, name + EXT);
+    }
+
+    public static boolean exists(Context ctx, String bookLocalPath) {
+        File f = indexFileFor(ctx, bookLocalPath);
+        return f.exists() && f.length() > 0;
+    }
+
+    /** Opens the index for a book, or returns null if it is missing or unreadable. */
+    public static PageTextIndex open(Context ctx, String bookLocalPath) {
+        File f = indexFileFor(ctx, bookLocalPath);
+        if (!f.exists() || f.length() == 0) return null;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(f, "r");
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                Log.w(TAG, "Stale or foreign index, ignoring: " + f.getName());
+                raf.close();
+                f.delete();
+                return null;
+            }
+            long sourceLength = raf.readLong();
+            if (sourceLength != new File(bookLocalPath).length()) {
+                Log.w(TAG, "Index does not match document, ignoring: " + f.getName());
+                raf.close();
+                f.delete();
+                return null;
+            }
+            int pageCount = raf.readInt();
+            long[] offsets = new long[pageCount + 1];
+            for (int i = 0; i <= pageCount; i++) {
+                offsets[i] = raf.readLong();
+            }
+            long dataStart = raf.getFilePointer();
+            raf.seek(dataStart + offsets[pageCount]);
+            long[] repeated = new long[raf.readInt()];
+            for (int i = 0; i < repeated.length; i++) {
+                repeated[i] = raf.readLong();
+            }
+            return new PageTextIndex(raf, offsets, dataStart, repeated);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open index " + f.getName(), e);
+            if (raf != null) {
+                try { raf.close(); } catch (IOException ignored) {}
+            }
+            return null;
+        }
+    }
+
+    static int headerSize(int pageCount) {
+        return 4 + 4 + 8 + 4 + 8 * (pageCount + 1);
+    }
+
+    public int getPageCount() {
+        return offsets.length - 1;
+    }
+
+    /** Line hashes learned as running headers and footers while the book was indexed. */
+    public long[] getRepeatedLines() {
+        return repeatedLines;
+    }
+
+    /** Returns the stored text of a page, or null if the page is not in the index. */
+    public synchronized String getPageText(int pageIndex) {
+        if (pageIndex < 0 || pageIndex >= getPageCount()) return null;
+        long start = offsets[pageIndex];
+        int len = (int) (offsets[pageIndex + 1] - start);
+        if (len == 0) return "";
+        try {
+            byte[] buf = new byte[len];
+            file.seek(dataStart + start);
+            file.readFully(buf);
+            return new String(buf, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read page " + pageIndex, e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            file.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,222 @@
+package com.doctell.app.model.pdf;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.doctell.app.model.analytics.DocTellCrashlytics;
+import com.doctell.app.model.voice.NoiseFilter;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the {@link PageTextIndex} and {@link PageLayoutIndex} of a book once, in the background,
+ * from a single stripper pass per page.
+ * Pages are stripped in parallel on an {@link ExtractionPool} of its own, so it never competes
+ * with the reader for the shared PDDocument and a long book scales with the cores.
+ */
+public final class PageTextIndexer {
+
+    private static final String TAG = "PageTextIndexer";
+
+    private static final ExecutorService INDEX_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "PageTextIndexer");
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private static final Set<String> inFlight = new HashSet<>();
+
+    private PageTextIndexer() {}
+
+    public static void buildAsync(Context ctx, String bookLocalPath) {
+        Context appCtx = ctx.getApplicationContext();
+        if (isBuilt(appCtx, bookLocalPath)) return;
+        synchronized (inFlight) {
+            if (!inFlight.add(bookLocalPath)) return;
+        }
+        INDEX_EXECUTOR.execute(() -> {
+            try {
+                build(appCtx, bookLocalPath);
+            } finally {
+                synchronized (inFlight) {
+                    inFlight.remove(bookLocalPath);
+                }
+            }
+        });
+    }
+
+    /** Both files are in place; books indexed before the layout existed get rebuilt. */
+    public static boolean isBuilt(Context ctx, String bookLocalPath) {
+        return PageTextIndex.exists(ctx, bookLocalPath) && PageLayoutIndex.exists(ctx, bookLocalPath);
+    }
+
+    private static void build(Context ctx, String bookLocalPath) {
+        if (isBuilt(ctx, bookLocalPath)) return;
+
+        File source = new File(bookLocalPath);
+        File target = PageTextIndex.indexFileFor(ctx, bookLocalPath);
+        File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        File layoutTarget = PageLayoutIndex.layoutFileFor(ctx, bookLocalPath);
+        File layoutTmp = new File(layoutTarget.getParentFile(), layoutTarget.getName() + ".tmp");
+        long startMs = SystemClock.elapsedRealtime();
+
+        ExtractionPool pool = new ExtractionPool(ctx, bookLocalPath, ExtractionPool.defaultSize(ctx));
+        ExecutorService workers = Executors.newFixedThreadPool(pool.size(), r -> {
+            Thread t = new Thread(r, "PageTextIndexer-worker");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+             RandomAccessFile layoutOut = new RandomAccessFile(layoutTmp, "rw")) {
+
+            int pageCount = pool.extract(PDDocument::getNumberOfPages);
+            long[] offsets = new long[pageCount + 1];
+            long[] layoutOffsets = new long[pageCount + 1];
+
+            writeHeader(out, PageTextIndex.MAGIC, PageTextIndex.VERSION, source.length(), pageCount);
+            writeHeader(layoutOut, PageLayoutIndex.MAGIC, PageLayoutIndex.VERSION, source.length(), pageCount);
+
+            long pos = 0, layoutPos = 0;
+            NoiseFilter.LineLearner noise = new NoiseFilter.LineLearner();
+            ByteBuffer record = ByteBuffer.allocate(4096);
+            // pages are stripped in parallel but written in order; a small window bounds memory
+            ArrayDeque<Future<Extracted>> window = new ArrayDeque<>();
+            int next = 0;
+            for (int i = 0; i < pageCount; i++) {
+                while (next < pageCount && window.size() < pool.size() * 2) {
+                    int p = next++;
+                    window.add(workers.submit(() -> extract(pool, p)));
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Indexing interrupted at page " + i);
+                }
+                offsets[i] = pos;
+                layoutOffsets[i] = layoutPos;
+
+                Extracted page = await(window.poll());
+                noise.addPage(page.text);
+                byte[] bytes = page.text.getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                pos += bytes.length;
+
+                int size = page.layout.byteSize();
+                if (record.capacity() < size) record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+                record.clear();
+                page.layout.writeTo(record);
+                layoutOut.write(record.array(), 0, size);
+                layoutPos += size;
+            }
+            offsets[pageCount] = pos;
+            layoutOffsets[pageCount] = layoutPos;
+
+            // running headers, footers and page numbers, found now that every page was seen
+            long[] repeated = noise.repeatedLines();
+            out.writeInt(repeated.length);
+            for (long h : repeated) {
+                out.writeLong(h);
+            }
+
+            writeOffsets(out, offsets);
+            writeOffsets(layoutOut, layoutOffsets);
+            out.getFD().sync();
+            layoutOut.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failed to index " + source.getName(), e);
+            DocTellCrashlytics.logNonFatal("pdf_index", "page text indexing failed", e);
+            tmp.delete();
+            layoutTmp.delete();
+            return;
+        } finally {
+            workers.shutdownNow();
+            pool.close();
+        }
+
+        // layout first: readers take an existing text index as the sign both are there
+        if (!layoutTmp.renameTo(layoutTarget) || !tmp.renameTo(target)) {
+            Log.w(TAG, "Could not move index into place: " + target.getName());
+            tmp.delete();
+            layoutTmp.delete();
+            return;
+        }
+        // every page is in the index now, none has to be skipped any more
+        SlowPages.delete(ctx, bookLocalPath);
+        Log.d(TAG, "Indexed " + source.getName() + " in "
+                + (SystemClock.elapsedRealtime() - startMs) + " ms");
+    }
+
+    /** Text of one page and its word boxes, with offsets into the text. */
+    private static final class Extracted {
+        final String text;
+        final PageLayout layout;
+
+        Extracted(String text, PageLayout layout) {
+            this.text = text;
+            this.layout = layout;
+        }
+    }
+
+    /** One stripper pass on a pooled handle; a page that fails is indexed as empty. */
+    private static Extracted extract(ExtractionPool pool, int pageIndex) throws IOException {
+        try {
+            return pool.extract(doc -> {
+                PositionAwareStripper stripper = new PositionAwareStripper();
+                stripper.setAddMoreFormatting(true);
+                stripper.setStartPage(pageIndex + 1);
+                stripper.setEndPage(pageIndex + 1);
+                String raw = stripper.getText(doc);
+                String text = raw != null ? raw.trim() : "";
+                return new Extracted(text,
+                        stripper.getLayout().rebase(raw != null ? raw.indexOf(text) : 0, text.length()));
+            });
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            DocTellCrashlytics.logNonFatal("pdf_index", "page " + pageIndex + " could not be stripped", e);
+            return new Extracted("", PageLayout.EMPTY);
+        }
+    }
+
+    private static Extracted await(Future<Extracted> page) throws IOException {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Indexing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private static void writeHeader(RandomAccessFile out, int magic, int version,
+                                    long sourceLength, int pageCount) throws IOException {
+        out.setLength(0);
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeLong(sourceLength);
+        out.writeInt(pageCount);
+        // offset table is filled in once all pages are written
+        out.seek(PageTextIndex.headerSize(pageCount));
+    }
+
+    private static void writeOffsets(RandomAccessFile out, long[] offsets) throws IOException {
+        out.seek(PageTextIndex.headerSize(offsets.length - 1) - 8L * offsets.length);
+        for (long o : offsets) {
+            out.writeLong(o);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.doctell.app.model.pdf;
+
+import java.io.IOException;
+
+/**
+ * A page could not be stripped within its time budget, see {@link TextOnlyStripper#setTimeBudget}.
+ * The page is fine, only too expensive to wait for; it can be extracted again without a budget.
+ */
+public class PageTimeoutException extends IOException {
+
+    public final int pageIndex;
+
+    public PageTimeoutException(int pageIndex, long budgetMs) {
+        super("Page " + pageIndex + " takes longer than " + budgetMs + " ms to extract");
+        this.pageIndex = pageIndex;
+    }
+}
@@ -0,0 +1,70 @@
+package com.doctell.app.model.pdf;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.tom_roush.pdfbox.pdmodel.font.CMapManager;
+import com.tom_roush.pdfbox.pdmodel.font.FontMappers;
+import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
+import com.tom_roush.pdfbox.pdmodel.font.encoding.GlyphList;
+
+/**
+ * Initialises PDFBox's lazy singletons at app start, on a low-priority thread, so the first
+ * page of the first book does not pay for them: the system font scan behind the font mapper,
+ * the standard 14 font metrics, the Adobe glyph list and the Identity CMaps.
+ * <p>
+ * Each step is timed in the log. Extraction that starts before the prewarm is done just waits
+ * on the same class initialisation, so nothing is done twice.
+ */
+public final class PdfBoxPrewarm {
+
+    private static final String TAG = "PdfBoxPrewarm";
+
+    private static volatile long doneAt;   // elapsedRealtime, 0 while running
+    private static boolean started;
+
+    private PdfBoxPrewarm() {}
+
+    /** Starts the prewarm once per process; call after {@code PDFBoxResourceLoader.init}. */
+    public static synchronized void start() {
+        if (started) return;
+        started = true;
+        Thread t = new Thread(PdfBoxPrewarm::run, "PdfBoxPrewarm");
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Whether every step has run, for logging the first extraction against it. */
+    public static boolean isDone() {
+        return doneAt != 0;
+    }
+
+    private static void run() {
+        long start = SystemClock.elapsedRealtime();
+        step("font mapper", () -> FontMappers.instance().getFontBoxFont("Helvetica", null));
+        step("standard 14 fonts", () -> PDType1Font.HELVETICA.getName());
+        step("glyph list", () -> GlyphList.getAdobeGlyphList().toUnicode("A"));
+        step("cmaps", () -> {
+            CMapManager.getPredefinedCMap("Identity-H");
+            CMapManager.getPredefinedCMap("Identity-V");
+        });
+        doneAt = SystemClock.elapsedRealtime();
+        Log.d(TAG, "Prewarm done in " + (doneAt - start) + " ms");
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private static void step(String name, Step step) {
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            step.run();
+            Log.d(TAG, name + ": " + (SystemClock.elapsedRealtime() - t0) + " ms");
+        } catch (Exception | LinkageError e) {
+            // only a head start; extraction will initialise it again and report real failures
+            Log.w(TAG, name + " failed", e);
+        }
+    }
+}
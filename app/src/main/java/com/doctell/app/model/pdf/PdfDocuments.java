@@ -0,0 +1,78 @@
+package com.doctell.app.model.pdf;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.io.RandomAccessBufferedFileInputStream;
+import com.tom_roush.pdfbox.io.RandomAccessRead;
+import com.tom_roush.pdfbox.io.ScratchFile;
+import com.tom_roush.pdfbox.pdfparser.PDFParser;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The one place a {@link PDDocument} is opened from a local copy under {@code docs/}.
+ * <p>
+ * Input is a {@link MappedRandomAccessRead}; scratch memory is sized to the file and the app's
+ * heap, spilling to temp files only past that, rather than always going to disk.
+ */
+public final class PdfDocuments {
+
+    private static final String TAG = "PdfDocuments";
+
+    private static final long MB = 1024L * 1024L;
+    // share of the heap one document's scratch may hold; several can be open (ExtractionPool)
+    private static final int HEAP_SHARE = 16;
+    // decoded streams rarely need more than this relative to the file
+    private static final int FILE_SHARE = 4;
+
+    private PdfDocuments() {}
+
+    /** Parses a local PDF. Throws like {@link PDDocument#load(File)}. */
+    public static PDDocument open(Context ctx, File file) throws IOException {
+        long startMs = SystemClock.elapsedRealtime();
+        RandomAccessRead source = input(file);
+        ScratchFile scratch = new ScratchFile(scratchFor(ctx, file.length()));
+        try {
+            PDFParser parser = new PDFParser(source, "", null, null, scratch);
+            parser.parse();
+            PDDocument doc = parser.getPDDocument();
+            Log.d(TAG, "Opened " + file.getName() + " (" + file.length() / 1024 + " KB) in "
+                    + (SystemClock.elapsedRealtime() - startMs) + " ms");
+            return doc;
+        } catch (IOException | RuntimeException e) {
+            try {
+                scratch.close();
+            } catch (IOException ignored) {}
+            source.close();
+            throw e;
+        }
+    }
+
+    private static RandomAccessRead input(File file) throws IOException {
+        try {
+            return new MappedRandomAccessRead(file);
+        } catch (IOException e) {
+            // too large to map, or mmap refused: the buffered stream PDFBox uses by default
+            Log.w(TAG, "Mapping failed, using buffered input: " + e.getMessage());
+            return new RandomAccessBufferedFileInputStream(file);
+        }
+    }
+
+    /**
+     * In-memory scratch up to a quarter of the file, capped by a share of the heap; the rest
+     * goes to temp files. Temp files only on low-RAM devices.
+     */
+    static MemoryUsageSetting scratchFor(Context ctx, long fileLength) {
+        ActivityManager am = (ActivityManager) ctx.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null || am.isLowRamDevice()) return MemoryUsageSetting.setupTempFileOnly();
+        long heapBudget = am.getMemoryClass() * MB / HEAP_SHARE;
+        long bytes = Math.max(MB, Math.min(heapBudget, fileLength / FILE_SHARE));
+        return MemoryUsageSetting.setupMixed(bytes);
+    }
+}
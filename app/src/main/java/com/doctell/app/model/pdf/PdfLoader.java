@@ -5,39 +5,140 @@ import android.graphics.pdf.PdfRenderer;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.doctell.app.model.analytics.DocTellCrashlytics;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class PdfLoader {
     private static final String TAG = "PdfLoader";
 
+    /**
+     * An open book in two halves. The renderer half is there as soon as the session is handed
+     * out, so the first page can be shown at the cost of one render. The PDFBox half (document
+     * and page geometry) is parsed in the background; text, highlight and chapter code waits for
+     * it with {@link #awaitDocument()} and uses it under {@link #getDocumentLock()}.
+     */
     public static final class PdfSession {
         public final String path;
-        public final PDDocument doc;
         public final ParcelFileDescriptor pfd;
         public final PdfRenderer renderer;
         public final int pageCount;
 
+        private static final Handler MAIN = new Handler(Looper.getMainLooper());
+        private final CountDownLatch documentReady = new CountDownLatch(1);
+        private final Object documentLock = new Object();
+        private final List<Runnable> documentCallbacks = new ArrayList<>();
+        private volatile PDDocument doc;
+        // page sizes for highlight mapping, so nobody opens renderer pages just to measure them
+        private volatile PageGeometry geometry;
+        private volatile IOException documentError;
+        private boolean closed;
+
         PdfSession(String path,
-                   PDDocument doc,
                    ParcelFileDescriptor pfd,
                    PdfRenderer renderer,
                    int pageCount) {
             this.path = path;
-            this.doc = doc;
             this.pfd = pfd;
             this.renderer = renderer;
             this.pageCount = pageCount;
         }
+
+        /** Blocks until the PDFBox document is parsed. Never call on the main thread. */
+        public PDDocument awaitDocument() throws IOException {
+            try {
+                documentReady.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + path);
+            }
+            if (documentError != null) throw documentError;
+            PDDocument d = doc;
+            if (d == null) throw new IOException("Session closed: " + path);
+            return d;
+        }
+
+        /** The document if it is parsed already, otherwise null. */
+        public PDDocument peekDocument() {
+            return doc;
+        }
+
+        /** Page geometry, or null while the document is still being parsed. */
+        public PageGeometry getGeometry() {
+            return geometry;
+        }
+
+        /** Held by everyone using the shared document, which is not thread-safe. */
+        public Object getDocumentLock() {
+            return documentLock;
+        }
+
+        /** Runs on the main thread once the document is parsed; right away if it already is. */
+        public void onDocumentReady(Runnable callback) {
+            synchronized (documentCallbacks) {
+                if (documentReady.getCount() > 0) {
+                    documentCallbacks.add(callback);
+                    return;
+                }
+            }
+            MAIN.post(callback);
+        }
+
+        private void completeDocument(PDDocument doc, PageGeometry geometry, IOException error) {
+            List<Runnable> callbacks;
+            synchronized (documentCallbacks) {
+                this.doc = doc;
+                this.geometry = geometry;
+                this.documentError = error;
+                documentReady.countDown();
+                callbacks = new ArrayList<>(documentCallbacks);
+                documentCallbacks.clear();
+            }
+            if (error == null) {
+                for (Runnable r : callbacks) MAIN.post(r);
+            }
+        }
+
+        /** Closes the renderer now and the document once it is parsed. */
+        private void close() {
+            try {
+                renderer.close();
+            } catch (Exception ignore) {}
+            try {
+                pfd.close();
+            } catch (Exception ignore) {}
+            synchronized (documentCallbacks) {
+                closed = true;
+                documentCallbacks.clear();
+            }
+            closeDocumentIfDone();
+        }
+
+        private void closeDocumentIfDone() {
+            PDDocument d;
+            synchronized (documentCallbacks) {
+                if (!closed || documentReady.getCount() > 0) return;
+                d = doc;
+                doc = null;
+            }
+            if (d == null) return;
+            synchronized (documentLock) {
+                try {
+                    d.close();
+                } catch (Exception ignore) {}
+            }
+        }
     }
 
     public interface Listener {
@@ -49,6 +150,8 @@ public class PdfLoader {
 
     private final Context appContext;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // PDFBox parses run apart, so opening the next book's renderer never waits for one
+    private final ExecutorService documentExecutor = Executors.newSingleThreadExecutor();
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private PdfSession currentSession;
@@ -106,19 +209,18 @@ public class PdfLoader {
 
         executor.execute(() -> {
             Log.d(TAG, "Loading PDF on background thread: " + path);
+            long startMs = SystemClock.elapsedRealtime();
             PdfSession newSession = null;
             Throwable error = null;
 
             try {
+                // only the renderer: that is all the first page needs
                 File file = new File(path);
                 ParcelFileDescriptor pfd = ParcelFileDescriptor.open(
                         file, ParcelFileDescriptor.MODE_READ_ONLY);
                 PdfRenderer renderer = new PdfRenderer(pfd);
-                PDDocument doc = PDDocument.load(
-                        file, MemoryUsageSetting.setupTempFileOnly());
-                int pageCount = renderer.getPageCount();
-
-                newSession = new PdfSession(path, doc, pfd, renderer, pageCount);
+                newSession = new PdfSession(path, pfd, renderer, renderer.getPageCount());
+                Log.d(TAG, "Renderer ready in " + (SystemClock.elapsedRealtime() - startMs) + " ms");
 
             } catch (OutOfMemoryError oom) {
                 Log.e(TAG, "Out of memory while loading PDF", oom);
@@ -143,9 +245,10 @@ public class PdfLoader {
             }
 
             if (error == null && newSession != null) {
+                PdfSession session = newSession;
+                documentExecutor.execute(() -> loadDocument(session, startMs));
                 for (Listener l : toNotify) {
-                    PdfSession finalSession = newSession;
-                    mainHandler.post(() -> l.onLoaded(finalSession));
+                    mainHandler.post(() -> l.onLoaded(session));
                 }
             } else {
                 for (Listener l : toNotify) {
@@ -156,6 +259,31 @@ public class PdfLoader {
         });
     }
 
+    /** Second half of a load: the PDFBox parse, then the text index build. */
+    private void loadDocument(PdfSession session, long startMs) {
+        PDDocument doc = null;
+        IOException error = null;
+        try {
+            doc = PdfDocuments.open(appContext, new File(session.path));
+            PageGeometry geometry = PageGeometry.collect(doc);
+            session.completeDocument(doc, geometry, null);
+            Log.d(TAG, "Document ready in " + (SystemClock.elapsedRealtime() - startMs) + " ms");
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            Log.e(TAG, "Could not parse " + session.path, e);
+            DocTellCrashlytics.logNonFatal("pdf_load", "document parse failed", e);
+            if (doc != null) {
+                try {
+                    doc.close();
+                } catch (IOException ignored) {}
+            }
+            error = e instanceof IOException ? (IOException) e : new IOException(e);
+            session.completeDocument(null, null, error);
+        }
+        // the session may have been closed while the document was parsed
+        session.closeDocumentIfDone();
+        if (error == null) PageTextIndexer.buildAsync(appContext, session.path);
+    }
+
     /** Close and clear current session (e.g. when user closes the book). **/
     public synchronized void closeCurrent() {
         closeCurrentSessionLocked();
@@ -163,25 +291,7 @@ public class PdfLoader {
 
     private void closeCurrentSessionLocked() {
         if (currentSession == null) return;
-
-        try {
-            if (currentSession.renderer != null) {
-                currentSession.renderer.close();
-            }
-        } catch (Exception ignore) {}
-
-        try {
-            if (currentSession.pfd != null) {
-                currentSession.pfd.close();
-            }
-        } catch (Exception ignore) {}
-
-        try {
-            if (currentSession.doc != null) {
-                currentSession.doc.close();
-            }
-        } catch (Exception ignore) {}
-
+        currentSession.close();
         currentSession = null;
     }
 
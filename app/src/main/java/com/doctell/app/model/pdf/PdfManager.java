@@ -2,46 +2,113 @@ package com.doctell.app.model.pdf;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.RectF;
 import android.graphics.pdf.PdfRenderer;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
+import android.util.Log;
 
+import com.doctell.app.model.entity.Prefs;
+import com.doctell.app.model.voice.NoiseFilter;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class PdfManager {
 
+    private static final String TAG = "PdfManager";
+
+    /**
+     * How long the reader waits for one page to be stripped. A page that takes longer is
+     * flagged in {@link SlowPages}, skipped for speech and extracted again in the background
+     * without a limit.
+     */
+    public static final long PAGE_BUDGET_MS = 1500;
+
     private final Context appContext;
     private final String bookLocalPath; // Book.getLocalPath()
 
+    private final PdfLoader.PdfSession session;
     private PDDocument pdDocument;
     private PdfRenderer pdfRenderer;
     private ParcelFileDescriptor pdfFd;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private boolean ownsResources = true;
+    private PageTextIndex textIndex;
+    private PageLayoutIndex layoutIndex;
+    private final NoiseFilter patterns;                // built-in and user watermarks
+    private NoiseFilter noiseFilter;                   // patterns with the lines learned by the index
+    private volatile int pageCount = -1;
+    private volatile String language; // speech language, decides where sentences end
+    private final PageBitmapCache bitmaps;
+    private final ExtractionPool extraction; // own handles, so extraction never waits on pdDocument
+    private final SlowPages slowPages;
+    // slow pages are retried on a handle of their own, so they never hold up the reader's
+    private final ExtractionPool retryPool;
+    private final ExecutorService retries;
+    private final Set<Integer> retrying = new HashSet<>();
+
+    // PdfRenderer and PDFBox are independent, so a render never waits for a text extraction
+    private final Object renderLock = new Object();   // pdfRenderer, pdfFd, bitmaps
+    private final Object textLock;                    // pdDocument, textIndex, layoutIndex, noiseFilter
+
+    // current page, a couple behind and the lookahead window
+    private static final int MODEL_CACHE_SIZE = PageLookahead.MAX_AHEAD + 4;
+    private final Map<Integer, PageModel> models =
+            new LinkedHashMap<Integer, PageModel>(MODEL_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, PageModel> eldest) {
+                    return size() > MODEL_CACHE_SIZE;
+                }
+            };
 
+    /**
+     * Works on the loader's session: its renderer right away, its document once parsed.
+     * With no session everything is opened here and closed with the manager.
+     */
     public PdfManager(Context ctx,
                       String bookLocalPath,
-                      PDDocument doc,
-                      ParcelFileDescriptor pdfFd,
-                      PdfRenderer renderer) {
+                      PdfLoader.PdfSession session) {
         this.appContext = ctx.getApplicationContext();
         this.bookLocalPath = bookLocalPath;
-        this.pdDocument = doc;
-        this.pdfFd = pdfFd;
-        this.pdfRenderer = renderer;
-        this.ownsResources = false;
+        this.session = session;
+        if (session != null) {
+            this.pdfFd = session.pfd;
+            this.pdfRenderer = session.renderer;
+            this.ownsResources = false;
+        }
+        // the session's document is shared with the chapter loader, so share its lock too
+        this.textLock = session != null ? session.getDocumentLock() : new Object();
+        this.patterns = NoiseFilter.withPatterns(appContext
+                .getSharedPreferences(Prefs.DOCTELL_PREFS.toString(), Context.MODE_PRIVATE)
+                .getStringSet(Prefs.NOISE_PATTERNS.toString(), Collections.emptySet()));
+        this.noiseFilter = patterns;
+        this.bitmaps = new PageBitmapCache(appContext, BitmapPool.getInstance(appContext));
+        this.extraction = new ExtractionPool(appContext, bookLocalPath, ExtractionPool.defaultSize(appContext));
+        this.slowPages = SlowPages.forBook(appContext, bookLocalPath);
+        this.retryPool = new ExtractionPool(appContext, bookLocalPath, 1);
+        this.retries = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "SlowPageRetry");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
     }
 
-    private synchronized void openIfNeeded() throws IOException {
-        if (pdDocument == null) {
-            pdDocument = PDDocument.load(new FileInputStream(bookLocalPath));
-        }
+    /** Renderer side; caller holds {@link #renderLock}. */
+    private PdfRenderer rendererLocked() throws IOException {
         if (pdfRenderer == null) {
             pdfFd = ParcelFileDescriptor.open(
                     new File(bookLocalPath),
@@ -49,47 +116,318 @@ public class PdfManager {
             );
             pdfRenderer = new PdfRenderer(pdfFd);
         }
+        return pdfRenderer;
+    }
+
+    /** PDFBox side; caller holds {@link #textLock}. Waits for the session to finish parsing. */
+    private PDDocument documentLocked() throws IOException {
+        if (pdDocument == null) {
+            pdDocument = session != null
+                    ? session.awaitDocument()
+                    : PdfDocuments.open(appContext, new File(bookLocalPath));
+        }
+        return pdDocument;
     }
 
     public void ensureOpened() throws IOException{
-        synchronized(this){
-            openIfNeeded();
+        synchronized (renderLock) {
+            rendererLocked();
+        }
+        synchronized (textLock) {
+            documentLocked();
+        }
+    }
+
+    public int getPageCount() throws IOException {
+        int count = pageCount;
+        if (count >= 0) return count;
+        synchronized (renderLock) {
+            pageCount = rendererLocked().getPageCount();
+            return pageCount;
         }
     }
 
-    public synchronized int getPageCount() throws IOException {
-        openIfNeeded();
-        return pdfRenderer.getPageCount();
+    public String getPageText(int pageIndex) throws IOException {
+        synchronized (textLock) {
+            PageTextIndex index = textIndexIfReady();
+            if (index != null) {
+                String text = index.getPageText(pageIndex);
+                if (text != null) return text;
+            }
+            return PdfPreviewHelper.extractOnePageText(documentLocked(), pageIndex);
+        }
+    }
+
+    /**
+     * Page text, sentences and (optionally) word boxes for one page.
+     * Uses the text index when it is ready; otherwise one stripper pass builds everything.
+     * Stripping runs on a handle from the {@link ExtractionPool}, so calls for different pages
+     * proceed in parallel.
+     * <p>
+     * Stripping is limited to {@link #PAGE_BUDGET_MS}. A page over it, or flagged earlier, fails
+     * with a {@link PageTimeoutException} and is retried in the background; once that is done
+     * the model is picked up from the cache. Word boxes over the budget are left out instead.
+     */
+    public PageModel getPageModel(int pageIndex, boolean withLayout) throws IOException {
+        PageModel model = peekPageModel(pageIndex);
+        if (model == null) {
+            String lang = language;
+            String text;
+            PageLayout layout;
+            NoiseFilter noise;
+            synchronized (textLock) {
+                PageTextIndex index = textIndexIfReady();
+                text = index != null ? index.getPageText(pageIndex) : null;
+                noise = index != null ? noiseFilter : patterns;
+                PageLayoutIndex layouts = text != null ? layoutIndexIfReady() : null;
+                layout = layouts != null ? layouts.getPageLayout(pageIndex) : null;
+            }
+            if (layout != null) {
+                model = PageModel.fromIndex(pageIndex, text, layout, lang, noise);
+            } else if (text != null) {
+                model = PageModel.fromText(pageIndex, text, lang, noise);
+            } else {
+                if (slowPages.contains(pageIndex)) {
+                    retryInBackground(pageIndex);
+                    throw new PageTimeoutException(pageIndex, PAGE_BUDGET_MS);
+                }
+                try {
+                    model = extraction.extract(doc ->
+                            PageModel.build(doc, pageIndex, lang, noise, PAGE_BUDGET_MS));
+                } catch (PageTimeoutException e) {
+                    onSlowPage(e);
+                    throw e;
+                }
+            }
+            model = cache(model, lang);
+        }
+        if (withLayout && !model.hasLayout() && !slowPages.contains(pageIndex)) {
+            PageModel target = model;
+            try {
+                extraction.extract(doc -> {
+                    target.attachLayout(doc, PAGE_BUDGET_MS);
+                    return null;
+                });
+            } catch (PageTimeoutException e) {
+                // the text is there to be spoken; only highlights wait for the retry
+                onSlowPage(e);
+            }
+        }
+        return model;
+    }
+
+    /** Keeps a model unless another thread got there first; returns the one to use. */
+    private PageModel cache(PageModel model, String lang) {
+        synchronized (models) {
+            PageModel other = models.get(model.pageIndex);
+            if (other != null) return other; // built by another thread in the meantime
+            if (lang == null ? language == null : lang.equals(language)) {
+                // not cached if the language changed while it was being split
+                models.put(model.pageIndex, model);
+            }
+            return model;
+        }
+    }
+
+    private void onSlowPage(PageTimeoutException e) {
+        Log.w(TAG, e.getMessage() + ", retrying in the background");
+        slowPages.add(e.pageIndex);
+        retryInBackground(e.pageIndex);
+    }
+
+    /**
+     * Extracts a slow page without a time limit, one at a time at low priority, and caches the
+     * result. The page stays flagged: the next session again skips it rather than wait.
+     */
+    private void retryInBackground(int pageIndex) {
+        synchronized (retrying) {
+            if (!retrying.add(pageIndex)) return;
+        }
+        try {
+            retries.execute(() -> {
+                try {
+                    long start = SystemClock.elapsedRealtime();
+                    PageModel cached = peekPageModel(pageIndex);
+                    if (cached != null) {
+                        retryPool.extract(doc -> {
+                            cached.attachLayout(doc, 0);
+                            return null;
+                        });
+                    } else {
+                        String lang = language;
+                        NoiseFilter noise;
+                        synchronized (textLock) {
+                            noise = textIndexIfReady() != null ? noiseFilter : patterns;
+                        }
+                        PageModel built = retryPool.extract(doc ->
+                                PageModel.build(doc, pageIndex, lang, noise, 0));
+                        cache(built, lang);
+                    }
+                    Log.d(TAG, "Slow page " + pageIndex + " extracted in the background in "
+                            + (SystemClock.elapsedRealtime() - start) + " ms");
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Background retry failed for page " + pageIndex, e);
+                } finally {
+                    synchronized (retrying) {
+                        retrying.remove(pageIndex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed in the meantime
+            synchronized (retrying) {
+                retrying.remove(pageIndex);
+            }
+        }
     }
 
-    public synchronized String getPageText(int pageIndex) throws IOException {
-        openIfNeeded();
-        return PdfPreviewHelper.extractOnePageText(pdDocument, pageIndex);
+    /** How many pages can be extracted at once, for callers that fan work out. */
+    public int getExtractionParallelism() {
+        return extraction.size();
     }
 
-    public synchronized Bitmap renderPageBitmap(
+    /**
+     * Word rects in page points for a sentence: straight from the page model when the
+     * sentence is the one it expects, otherwise by aligning the text against the page words.
+     */
+    public List<RectF> getSentenceRects(int pageIndex, int sentence, String text) throws IOException {
+        PageModel model = getPageModel(pageIndex, true);
+        if (sentence >= 0 && sentence < model.getSentenceCount()
+                && text.equals(model.getSentences().get(sentence))) {
+            return model.getSentenceRects(sentence);
+        }
+        synchronized (textLock) {
+            // no unlimited strip of a slow page here; highlights come back with the retry
+            if (slowPages.contains(pageIndex) && textIndexIfReady() == null) {
+                return Collections.emptyList();
+            }
+            // the layout's offsets point into the indexed text, so both come from the index
+            PageTextIndex index = textIndexIfReady();
+            PageLayoutIndex layouts = index != null ? layoutIndexIfReady() : null;
+            PageLayout layout = layouts != null ? layouts.getPageLayout(pageIndex) : null;
+            String pageText = layout != null ? index.getPageText(pageIndex) : null;
+            if (pageText != null) {
+                return PdfPreviewHelper.getRectsForSentence(layout, pageText, text);
+            }
+            return PdfPreviewHelper.getRectsForSentence(documentLocked(), pageIndex, text);
+        }
+    }
+
+    /**
+     * Sets the language sentences are split for, e.g. the TTS voice's "sv-SE". Prepared models
+     * were split for the old one, so they are dropped when it changes.
+     */
+    public void setLanguage(String lang) {
+        synchronized (models) {
+            if (lang == null ? language == null : lang.equals(language)) return;
+            language = lang;
+            models.clear();
+        }
+    }
+
+    /** Already prepared model for a page, or null. Never blocks on extraction. */
+    public PageModel peekPageModel(int pageIndex) {
+        synchronized (models) {
+            return models.get(pageIndex);
+        }
+    }
+
+    /** The index is built in the background, so keep checking until it shows up. Caller holds {@link #textLock}. */
+    private PageTextIndex textIndexIfReady() {
+        if (textIndex == null && PageTextIndex.exists(appContext, bookLocalPath)) {
+            textIndex = PageTextIndex.open(appContext, bookLocalPath);
+            if (textIndex != null) {
+                noiseFilter = patterns.withRepeatedLines(textIndex.getRepeatedLines());
+            }
+        }
+        return textIndex;
+    }
+
+    /** Word layout written with the text index; null until it exists. Caller holds {@link #textLock}. */
+    private PageLayoutIndex layoutIndexIfReady() {
+        if (layoutIndex == null && PageLayoutIndex.exists(appContext, bookLocalPath)) {
+            layoutIndex = PageLayoutIndex.open(appContext, bookLocalPath);
+        }
+        return layoutIndex;
+    }
+
+    public Bitmap renderPageBitmap(
             int pageIndex,
             DisplayMetrics dm,
             int targetWidthPx
     ) throws IOException {
-        openIfNeeded();
-        return PdfPreviewHelper.renderOnePage(pdfRenderer, pageIndex, dm, targetWidthPx);
+        int width = resolveWidth(dm, targetWidthPx);
+        synchronized (renderLock) {
+            Bitmap bmp = bitmaps.get(pageIndex, width);
+            if (bmp != null) return bmp;
+
+            PdfRenderer renderer = rendererLocked();
+            // the renderer may be shared with the activity, which locks on it to open pages
+            synchronized (renderer) {
+                bmp = PdfPreviewHelper.renderOnePage(renderer, pageIndex, dm, width,
+                        BitmapPool.getInstance(appContext));
+            }
+            // the 1x1 fallback of a failed render is not worth keeping
+            if (bmp.getWidth() == width) bitmaps.put(pageIndex, width, bmp);
+            return bmp;
+        }
     }
 
-    public synchronized void close() {
-        if (ownsResources) {
-            try {
-                if (pdfRenderer != null) pdfRenderer.close();
-            } catch (Exception ignore) {}
-            try {
-                if (pdfFd != null) pdfFd.close();
-            } catch (IOException ignored) {}
-            try {
-                if (pdDocument != null) pdDocument.close();
-            } catch (IOException ignored) {}
+    /** Already rendered page, or null. Never blocks on rendering. */
+    public Bitmap peekPageBitmap(int pageIndex, DisplayMetrics dm, int targetWidthPx) {
+        return bitmaps.get(pageIndex, resolveWidth(dm, targetWidthPx));
+    }
+
+    /** Renders a page into the cache unless it is already there. */
+    public void prefetchPageBitmap(int pageIndex, DisplayMetrics dm, int targetWidthPx) throws IOException {
+        if (pageIndex < 0 || pageIndex >= getPageCount()) return;
+        if (peekPageBitmap(pageIndex, dm, targetWidthPx) != null) return;
+        renderPageBitmap(pageIndex, dm, targetWidthPx);
+    }
+
+    /** Tells the cache which render is on screen, so it is not handed out for reuse. */
+    public void onPageBitmapShown(Bitmap bmp) {
+        bitmaps.setDisplayed(bmp);
+    }
+
+    private static int resolveWidth(DisplayMetrics dm, int targetWidthPx) {
+        return targetWidthPx > 0 ? targetWidthPx : Math.min(dm.widthPixels, 1200);
+    }
+
+    public void close() {
+        // always renderLock before textLock
+        synchronized (renderLock) {
+            synchronized (textLock) {
+                if (textIndex != null) {
+                    textIndex.close();
+                    textIndex = null;
+                }
+                if (layoutIndex != null) {
+                    layoutIndex.close();
+                    layoutIndex = null;
+                }
+                if (ownsResources) {
+                    try {
+                        if (pdfRenderer != null) pdfRenderer.close();
+                    } catch (Exception ignore) {}
+                    try {
+                        if (pdfFd != null) pdfFd.close();
+                    } catch (IOException ignored) {}
+                    try {
+                        if (pdDocument != null) pdDocument.close();
+                    } catch (IOException ignored) {}
+                }
+                synchronized (models) {
+                    models.clear();
+                }
+                extraction.close();
+                retries.shutdownNow();
+                retryPool.close();
+                bitmaps.clear();
+                pdfRenderer = null;
+                pdfFd = null;
+                pdDocument = null;
+            }
         }
-        pdfRenderer = null;
-        pdfFd = null;
-        pdDocument = null;
     }
 }
@@ -22,9 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class PdfPreviewHelper {
 
@@ -36,6 +34,15 @@ public class PdfPreviewHelper {
                                        int index,
                                        DisplayMetrics dm,
                                        int targetWidthPx) {
+        return renderOnePage(renderer, index, dm, targetWidthPx, null);
+    }
+
+    /** Same as above, rendering into a bitmap borrowed from {@code pool} when one is given. */
+    public static Bitmap renderOnePage(PdfRenderer renderer,
+                                       int index,
+                                       DisplayMetrics dm,
+                                       int targetWidthPx,
+                                       BitmapPool pool) {
         try {
             try (PdfRenderer.Page page = renderer.openPage(index)) {
                 if (targetWidthPx <= 0) {
@@ -44,7 +51,9 @@ public class PdfPreviewHelper {
 
                 int bmpW = targetWidthPx;
                 int bmpH = Math.round(bmpW * page.getHeight() / (float) page.getWidth());
-                Bitmap bmp = Bitmap.createBitmap(bmpW, bmpH, Bitmap.Config.ARGB_8888);
+                Bitmap bmp = pool != null
+                        ? pool.acquire(bmpW, bmpH)
+                        : Bitmap.createBitmap(bmpW, bmpH, Bitmap.Config.ARGB_8888);
                 bmp.eraseColor(0xFFFFFFFF);
 
                 Matrix m = new Matrix();
@@ -73,7 +82,7 @@ public class PdfPreviewHelper {
 
     public static String extractOnePageText(PDDocument doc, int index) {
         try {
-            PDFTextStripper stripper = new PDFTextStripper();
+            PDFTextStripper stripper = new TextOnlyStripper();
             stripper.setSortByPosition(true);
             stripper.setAddMoreFormatting(true);
 
@@ -156,174 +165,41 @@ public class PdfPreviewHelper {
         return out.getAbsolutePath();
     }
 
+    /** Word rects of a sentence in page points, top-left origin; empty when it can't be found. */
     public static List<RectF> getRectsForSentence(
             PDDocument doc,
             int pageIndex,
-            String sentence,
-            int bitmapWidth,
-            int bitmapHeight,
-            int pageWidthPdf,
-            int pageHeightPdf
+            String sentence
     ) {
-        List<RectF> out = new ArrayList<>();
-        if (sentence == null) return out;
-
-        String targetNorm = normalizeForFuzzy(sentence);
-        if (targetNorm.isEmpty()) return out;
+        if (sentence == null) return new ArrayList<>();
 
         try {
             PositionAwareStripper stripper = new PositionAwareStripper();
             stripper.setStartPage(pageIndex + 1);
             stripper.setEndPage(pageIndex + 1);
-            stripper.getText(doc);
-
-            List<PositionAwareStripper.WordBox> words = stripper.getWords();
-            if (words.isEmpty()) return out;
-
-            float scaleX = bitmapWidth / (float) pageWidthPdf;
-            float scaleY = bitmapHeight / (float) pageHeightPdf;
-
-            StringBuilder pageBuilder = new StringBuilder();
-            List<Integer> wordStart = new ArrayList<>();
-            List<Integer> wordEnd = new ArrayList<>();
-
-            for (PositionAwareStripper.WordBox wb : words) {
-                String normWord = normalizeForFuzzy(wb.text);
-                if (normWord.isEmpty()) continue;
-
-                int startPos = pageBuilder.length();
-                pageBuilder.append(normWord).append(' ');
-                int endPos = pageBuilder.length();
-
-                wordStart.add(startPos);
-                wordEnd.add(endPos);
-            }
-
-            String pageNorm = pageBuilder.toString().trim();
-            if (pageNorm.isEmpty()) return out;
-
-            int idx = pageNorm.indexOf(targetNorm);
-            if (idx != -1) {
-                int idxEnd = idx + targetNorm.length();
-
-                int startWord = -1, endWord = -1;
-                for (int i = 0; i < wordStart.size(); i++) {
-                    int ws = wordStart.get(i);
-                    int we = wordEnd.get(i);
-                    if (we <= idx) continue;
-                    if (ws >= idxEnd) break;
-                    if (startWord == -1) startWord = i;
-                    endWord = i;
-                }
-
-                if (startWord != -1 && endWord != -1) {
-                    for (int k = startWord; k <= endWord; k++) {
-                        PositionAwareStripper.WordBox wb = words.get(k);
-
-                        float pdfLeft   = wb.x;
-                        float pdfRight  = wb.x + wb.w;
-                        float pdfTop    = wb.y;
-                        float pdfBottom = wb.y + wb.h;
-
-                        float left   = pdfLeft   * scaleX;
-                        float right  = pdfRight  * scaleX;
-                        float top    = pdfTop    * scaleY;
-                        float bottom = pdfBottom * scaleY;
-                        out.add(new RectF(left, top, right, bottom));
-                    }
-                    return out;
-                }
-            }
-
-            // 3) Fallback: fuzzy Jaccard
-            String[] targetTokens = targetNorm.split(" ");
-            int targetTokenCount = targetTokens.length;
-
-            int bestStart = -1, bestEnd = -1;
-            float bestScore = 0f;
-
-            for (int i = 0; i < words.size(); i++) {
-                StringBuilder sb = new StringBuilder();
-
-                for (int j = i; j < words.size(); j++) {
-                    sb.append(words.get(j).text).append(' ');
-                    String candNorm = normalizeForFuzzy(sb.toString());
-                    if (candNorm.isEmpty()) continue;
-
-                    int candTokens = candNorm.split(" ").length;
-
-                    // length guard
-                    if (candTokens > targetTokenCount * 1.8f) break;
-
-                    float score = jaccardSimilarity(targetNorm, candNorm);
-
-                    if (score > bestScore ||
-                            (Math.abs(score - bestScore) < 0.02f && bestStart != -1 && i < bestStart)) {
-                        bestScore = score;
-                        bestStart = i;
-                        bestEnd = j;
-                    }
-                }
-            }
-
-            final float THRESHOLD = 0.35f;
-            if (bestStart == -1 || bestEnd == -1 || bestScore < THRESHOLD) {
-                return out; // nothing convincing
-            }
-
-            for (int k = bestStart; k <= bestEnd; k++) {
-                PositionAwareStripper.WordBox wb = words.get(k);
-
-                float pdfLeft = wb.x;
-                float pdfRight = wb.x + wb.w;
-                float pdfTop = pageHeightPdf - wb.y;
-                float pdfBottom = pdfTop - wb.h;
-
-                float left = pdfLeft * scaleX;
-                float right = pdfRight * scaleX;
-                float top = pdfTop * scaleY;
-                float bottom = pdfBottom * scaleY;
-
-                out.add(new RectF(left, top, right, bottom));
-            }
-
+            String text = stripper.getText(doc);
+            return getRectsForSentence(stripper.getLayout(), text, sentence);
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        return out;
-    }
-
-
-    private static String normalizeForFuzzy(String s) {
-        if (s == null) return "";
-        String norm = s.toLowerCase();
-        norm = norm.replaceAll("[\"',;:()\\[\\]]", " ");
-        norm = norm.replaceAll("\\s+", " ").trim();
-        return norm;
+        return new ArrayList<>();
     }
 
-    private static float jaccardSimilarity(String a, String b) {
-        if (a.isEmpty() || b.isEmpty()) return 0f;
-
-        String[] aTokens = a.split(" ");
-        String[] bTokens = b.split(" ");
-
-        Set<String> setA = new HashSet<>();
-        Set<String> setB = new HashSet<>();
-
-        for (String t : aTokens) if (!t.isEmpty()) setA.add(t);
-        for (String t : bTokens) if (!t.isEmpty()) setB.add(t);
-
-        if (setA.isEmpty() || setB.isEmpty()) return 0f;
-
-        int inter = 0;
-        for (String t : setA) if (setB.contains(t)) inter++;
+    /** Same, against a layout already at hand (e.g. from the layout index); no PDFBox involved. */
+    public static List<RectF> getRectsForSentence(PageLayout layout, String pageText, String sentence) {
+        List<RectF> out = new ArrayList<>();
+        if (sentence == null || layout == null || layout.getWordCount() == 0) return out;
 
-        int union = setA.size() + setB.size() - inter;
-        if (union == 0) return 0f;
+        SentenceAligner.Match match = SentenceAligner.align(layout.wordTexts(pageText), sentence);
+        if (match == null) return out; // nothing convincing
 
-        return inter / (float) union;
+        float[] box = new float[4];
+        for (int k = match.firstWord; k <= match.lastWord; k++) {
+            layout.getBounds(k, box);
+            out.add(new RectF(box[0], box[1], box[2], box[3]));
+        }
+        return out;
     }
 
 
@@ -1,43 +1,57 @@
 package com.doctell.app.model.pdf;
 
-import com.tom_roush.pdfbox.text.PDFTextStripper;
 import com.tom_roush.pdfbox.text.TextPosition;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.StringWriter;
 import java.util.List;
 
 /**
- * Collects bounding boxes for each "word" on a page.
+ * Collects bounding boxes for each "word" on a page into a {@link PageLayout}.
+ * The text it returns is the same as a plain PDFTextStripper with the same settings; images
+ * and other content without text are skipped, see {@link TextOnlyStripper}.
  */
-public class PositionAwareStripper extends PDFTextStripper {
-
-    public static class WordBox {
-        public final String text;
-        public final float x, y, w, h;
-        public WordBox(String text, float x, float y, float w, float h) {
-            this.text = text;
-            this.x = x;
-            this.y = y;
-            this.w = w;
-            this.h = h;
-        }
-    }
+public class PositionAwareStripper extends TextOnlyStripper {
 
-    private final List<WordBox> words = new ArrayList<>();
+    private final PageLayout.Builder layout = new PageLayout.Builder(256);
+    private int line;
+    private int block = -1;
 
     public PositionAwareStripper() throws IOException {
         super();
         setSortByPosition(true);
     }
 
-    public List<WordBox> getWords() {
-        return words;
+    /** Word boxes with offsets into the text returned by {@link #getText}. */
+    public PageLayout getLayout() {
+        return layout.build();
+    }
+
+    private int outputLength() {
+        return output instanceof StringWriter ? ((StringWriter) output).getBuffer().length() : -1;
+    }
+
+    @Override
+    protected void writeParagraphStart() throws IOException {
+        super.writeParagraphStart();
+        block++;
+        if (layout.size() > 0) line++;
+    }
+
+    @Override
+    protected void writeLineSeparator() throws IOException {
+        super.writeLineSeparator();
+        line++;
     }
 
     @Override
     protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
-        if (string == null || string.trim().isEmpty()) {
+        if (string == null) {
+            return;
+        }
+        if (string.trim().isEmpty()) {
+            // still written so the text matches a plain PDFTextStripper
+            super.writeString(string, textPositions);
             return;
         }
 
@@ -57,10 +71,12 @@ public class PositionAwareStripper extends PDFTextStripper {
             maxY = Math.max(maxY, y + h);
         }
 
-        if (minX <= maxX && minY <= maxY) {
-            words.add(new WordBox(string, minX, minY, maxX - minX, maxY - minY));
-        }
-
+        int start = outputLength();
         super.writeString(string, textPositions);
+        int end = outputLength();
+
+        if (minX <= maxX && minY <= maxY && start >= 0) {
+            layout.add(minX, minY, maxX - minX, maxY - minY, start, end, line, Math.max(0, block));
+        }
     }
 }
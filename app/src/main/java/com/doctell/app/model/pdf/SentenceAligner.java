@@ -0,0 +1,201 @@
+package com.doctell.app.model.pdf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the run of page words that a spoken sentence came from.
+ * <p>
+ * Words are normalized once into token ids. An exact token match (KMP) is tried first; otherwise a
+ * window as long as the sentence slides over the page keeping a multiset overlap count, and the
+ * best window is trimmed at both ends. Both passes are linear in the page length.
+ * Plain Java so it can be unit tested on the JVM.
+ */
+public final class SentenceAligner {
+
+    /** Minimum multiset Jaccard score for a fuzzy match to count. */
+    public static final float THRESHOLD = 0.35f;
+
+    /** Inclusive range of page word indices and how well it matched (1 for exact). */
+    public static final class Match {
+        public final int firstWord;
+        public final int lastWord;
+        public final float score;
+
+        Match(int firstWord, int lastWord, float score) {
+            this.firstWord = firstWord;
+            this.lastWord = lastWord;
+            this.score = score;
+        }
+    }
+
+    private SentenceAligner() {}
+
+    /** Best match of {@code sentence} in {@code pageWords}, or null when nothing is convincing. */
+    public static Match align(List<String> pageWords, String sentence) {
+        if (pageWords == null || pageWords.isEmpty() || sentence == null) return null;
+
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> scratch = new ArrayList<>();
+
+        int[] target = toIds(tokenize(sentence, scratch), ids);
+        if (target.length == 0) return null;
+
+        // page tokens and the word each one came from
+        int[] page = new int[Math.max(16, pageWords.size() * 2)];
+        int[] tokenWord = new int[page.length];
+        int n = 0;
+        for (int w = 0; w < pageWords.size(); w++) {
+            for (String t : tokenize(pageWords.get(w), scratch)) {
+                if (n == page.length) {
+                    page = Arrays.copyOf(page, n * 2);
+                    tokenWord = Arrays.copyOf(tokenWord, n * 2);
+                }
+                page[n] = idOf(t, ids);
+                tokenWord[n] = w;
+                n++;
+            }
+        }
+        if (n == 0) return null;
+
+        int exact = indexOf(page, n, target);
+        if (exact >= 0) {
+            return new Match(tokenWord[exact], tokenWord[exact + target.length - 1], 1f);
+        }
+
+        int[] range = bestWindow(page, n, target, ids.size());
+        if (range == null) return null;
+        float score = jaccard(page, range[0], range[1], target, ids.size());
+        if (score < THRESHOLD) return null;
+        return new Match(tokenWord[range[0]], tokenWord[range[1]], score);
+    }
+
+    // ---- normalization ----
+
+    /**
+     * Lower-cased tokens split on whitespace and the punctuation the stripper and the
+     * sentence splitter disagree on.
+     */
+    static List<String> tokenize(String s, List<String> out) {
+        out.clear();
+        if (s == null) return out;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c) || isSeparator(c)) {
+                if (sb.length() > 0) {
+                    out.add(sb.toString());
+                    sb.setLength(0);
+                }
+            } else {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        if (sb.length() > 0) out.add(sb.toString());
+        return out;
+    }
+
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case '"': case '\'': case ',': case ';': case ':':
+            case '(': case ')': case '[': case ']':
+            case '\u201C': case '\u201D': case '\u2018': case '\u2019':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int idOf(String token, Map<String, Integer> ids) {
+        Integer id = ids.get(token);
+        if (id == null) {
+            id = ids.size();
+            ids.put(token, id);
+        }
+        return id;
+    }
+
+    private static int[] toIds(List<String> tokens, Map<String, Integer> ids) {
+        int[] out = new int[tokens.size()];
+        for (int i = 0; i < out.length; i++) out[i] = idOf(tokens.get(i), ids);
+        return out;
+    }
+
+    // ---- exact ----
+
+    /** First index of {@code pattern} in {@code text[0..n)}, Knuth-Morris-Pratt. */
+    static int indexOf(int[] text, int n, int[] pattern) {
+        int m = pattern.length;
+        if (m > n) return -1;
+        int[] fail = new int[m];
+        for (int i = 1, k = 0; i < m; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) k = fail[k - 1];
+            if (pattern[i] == pattern[k]) k++;
+            fail[i] = k;
+        }
+        for (int i = 0, k = 0; i < n; i++) {
+            while (k > 0 && text[i] != pattern[k]) k = fail[k - 1];
+            if (text[i] == pattern[k]) k++;
+            if (k == m) return i - m + 1;
+        }
+        return -1;
+    }
+
+    // ---- fuzzy ----
+
+    /**
+     * Slides a window of the sentence's length over the page, tracking
+     * sum(min(window count, sentence count)) per token in O(1) per step, then trims the best
+     * window's ends of tokens that are not (or no longer) needed by the sentence.
+     */
+    private static int[] bestWindow(int[] page, int n, int[] target, int vocab) {
+        int m = target.length;
+        int len = Math.min(m, n);
+        int[] need = new int[vocab];
+        for (int t : target) need[t]++;
+        int[] have = new int[vocab];
+
+        int overlap = 0;
+        for (int i = 0; i < len; i++) {
+            if (have[page[i]]++ < need[page[i]]) overlap++;
+        }
+        int best = overlap, bestStart = 0;
+        for (int start = 1; start + len <= n; start++) {
+            int out = page[start - 1];
+            if (--have[out] < need[out]) overlap--;
+            int in = page[start + len - 1];
+            if (have[in]++ < need[in]) overlap++;
+            if (overlap > best) {
+                best = overlap;
+                bestStart = start;
+            }
+        }
+        if (best == 0) return null;
+
+        int from = bestStart, to = bestStart + len - 1;
+        Arrays.fill(have, 0);
+        for (int i = from; i <= to; i++) have[page[i]]++;
+        // drop edge tokens that don't contribute to the overlap
+        while (from < to && have[page[from]] > need[page[from]]) have[page[from++]]--;
+        while (to > from && have[page[to]] > need[page[to]]) have[page[to--]]--;
+        // a window cut short by missing words can still pick up the sentence's tail or head
+        while (to + 1 < n && have[page[to + 1]] < need[page[to + 1]]) have[page[++to]]++;
+        while (from > 0 && have[page[from - 1]] < need[page[from - 1]]) have[page[--from]]++;
+        return new int[]{from, to};
+    }
+
+    /** Multiset Jaccard between {@code page[from..to]} and the sentence. */
+    private static float jaccard(int[] page, int from, int to, int[] target, int vocab) {
+        int[] need = new int[vocab];
+        for (int t : target) need[t]++;
+        int inter = 0;
+        for (int i = from; i <= to; i++) {
+            if (need[page[i]]-- > 0) inter++;
+        }
+        int union = target.length + (to - from + 1) - inter;
+        return union == 0 ? 0f : inter / (float) union;
+    }
+}
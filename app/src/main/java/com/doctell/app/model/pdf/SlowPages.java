@@ -0,0 +1,95 @@
+package com.doctell.app.model.pdf;
+
+import android.content.Context;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TreeSet;
+
+/**
+ * Pages of a book that did not finish within the reader's extraction budget, kept next to its
+ * {@link PageTextIndex} so the next session skips them at once instead of waiting again.
+ * <p>
+ * Only matters until the index is built; the indexer strips every page without a budget and
+ * deletes the flags when it is done.
+ */
+public final class SlowPages {
+
+    static final String EXT = ".slow";
+
+    private final File file;
+    private TreeSet<Integer> pages; // loaded on first use
+
+    SlowPages(File file) {
+        this.file = file;
+    }
+
+    public static SlowPages forBook(Context ctx, String bookLocalPath) {
+        return new SlowPages(fileFor(ctx, bookLocalPath));
+    }
+
+    /** Drops the flags of a book, e.g. once every page is in its index. */
+    public static void delete(Context ctx, String bookLocalPath) {
+        fileFor(ctx, bookLocalPath).delete();
+    }
+
+    private static File fileFor(Context ctx, String bookLocalPath) {
+        File index = PageTextIndex.indexFileFor(ctx, bookLocalPath);
+        String name = index.getName();
+        return new File(index.getParentFile(),
+                name.substring(0, name.length() - PageTextIndex.EXT.length()) + EXT);
+    }
+
+    public synchronized boolean contains(int pageIndex) {
+        return loaded().contains(pageIndex);
+    }
+
+    /** Flags a page; written through, as a session can end at any time. */
+    public synchronized void add(int pageIndex) {
+        if (loaded().add(pageIndex)) write();
+    }
+
+    /** Flagged pages in order. */
+    public synchronized int[] toArray() {
+        int[] out = new int[loaded().size()];
+        int i = 0;
+        for (int p : pages) out[i++] = p;
+        return out;
+    }
+
+    private TreeSet<Integer> loaded() {
+        if (pages != null) return pages;
+        pages = new TreeSet<>();
+        if (!file.exists()) return pages;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                pages.add(in.readInt());
+            }
+        } catch (IOException e) {
+            // a torn write; the pages will just be timed out once more
+            pages.clear();
+            file.delete();
+        }
+        return pages;
+    }
+
+    private void write() {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(pages.size());
+            for (int p : pages) {
+                out.writeInt(p);
+            }
+        } catch (IOException e) {
+            // the flag is only a shortcut, memory still has it for this session
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+}
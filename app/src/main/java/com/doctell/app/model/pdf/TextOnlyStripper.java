@@ -0,0 +1,134 @@
+package com.doctell.app.model.pdf;
+
+import android.os.SystemClock;
+
+import com.tom_roush.pdfbox.contentstream.PDFStreamEngine;
+import com.tom_roush.pdfbox.contentstream.operator.DrawObject;
+import com.tom_roush.pdfbox.contentstream.operator.Operator;
+import com.tom_roush.pdfbox.contentstream.operator.OperatorProcessor;
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSStream;
+import com.tom_roush.pdfbox.pdmodel.PDResources;
+import com.tom_roush.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * A {@link PDFTextStripper} that does not touch anything that cannot hold text.
+ * <p>
+ * {@code Do} is checked against the raw XObject dictionary before PDFBox builds an object for
+ * it: images are skipped without their stream being decoded, and forms (or transparency groups)
+ * whose own resources have no fonts and no nested XObjects are skipped without their content
+ * being parsed. Inline images and shadings are dropped as well. Scans with an OCR layer and
+ * brochure-style pages spend most of a plain strip there.
+ * <p>
+ * The text is the same as a plain PDFTextStripper's with the same settings.
+ * <p>
+ * Stripping can be given a time budget, and stops when its thread is interrupted, so one page
+ * with an enormous content stream does not hold its caller for seconds.
+ */
+public class TextOnlyStripper extends PDFTextStripper {
+
+    // clock checks are cheap, but a vector-heavy page runs hundreds of thousands of operators
+    private static final int CHECK_EVERY = 256;
+
+    private long budgetMs;
+    private long deadline; // elapsedRealtime, 0 for none
+    private int operators;
+
+    public TextOnlyStripper() throws IOException {
+        super();
+        addOperator(new TextXObjects(new DrawObject()));
+    }
+
+    /**
+     * Fails {@link #getText} with a {@link PageTimeoutException} once this many ms have passed
+     * from now; 0 for no limit. Meant for single-page strips.
+     */
+    public void setTimeBudget(long ms) {
+        budgetMs = ms;
+        deadline = ms > 0 ? SystemClock.elapsedRealtime() + ms : 0;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (++operators % CHECK_EVERY == 0) checkCancelled();
+        switch (operator.getName()) {
+            case "BI": // inline image, already read past by the parser
+            case "sh": // shading fill
+                return;
+            default:
+                super.processOperator(operator, operands);
+        }
+    }
+
+    private void checkCancelled() throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Text extraction interrupted");
+        }
+        if (deadline != 0 && SystemClock.elapsedRealtime() > deadline) {
+            throw new PageTimeoutException(getStartPage() - 1, budgetMs);
+        }
+    }
+
+    @Override
+    protected void operatorException(Operator operator, List<COSBase> operands, IOException e)
+            throws IOException {
+        // PDFBox only logs what goes wrong inside a form (Do); cancelling has to get out of it
+        if (e instanceof PageTimeoutException || e instanceof InterruptedIOException) throw e;
+        super.operatorException(operator, operands, e);
+    }
+
+    /** {@code Do} that only hands XObjects which may show text on to the real operator. */
+    private static final class TextXObjects extends OperatorProcessor {
+        private final OperatorProcessor drawObject;
+
+        TextXObjects(OperatorProcessor drawObject) {
+            this.drawObject = drawObject;
+        }
+
+        @Override
+        public void setContext(PDFStreamEngine context) {
+            super.setContext(context);
+            drawObject.setContext(context);
+        }
+
+        @Override
+        public void process(Operator operator, List<COSBase> operands) throws IOException {
+            if (!operands.isEmpty() && operands.get(0) instanceof COSName
+                    && !mayHoldText(context.getResources(), (COSName) operands.get(0))) {
+                return;
+            }
+            drawObject.process(operator, operands);
+        }
+
+        @Override
+        public String getName() {
+            return drawObject.getName();
+        }
+
+        private static boolean mayHoldText(PDResources resources, COSName name) {
+            if (resources == null) return true;
+            COSBase xobjects = resources.getCOSObject().getDictionaryObject(COSName.XOBJECT);
+            if (!(xobjects instanceof COSDictionary)) return true;
+            COSBase xobject = ((COSDictionary) xobjects).getDictionaryObject(name);
+            if (!(xobject instanceof COSStream)) return true;
+            COSStream stream = (COSStream) xobject;
+
+            COSName subtype = stream.getCOSName(COSName.SUBTYPE);
+            if (COSName.IMAGE.equals(subtype)) return false;
+            if (!COSName.FORM.equals(subtype)) return true;
+
+            // a form with its own resources can only set fonts, and so show text, from those;
+            // without resources it uses the page's, so it has to be processed
+            COSBase own = stream.getDictionaryObject(COSName.RESOURCES);
+            if (!(own instanceof COSDictionary)) return true;
+            COSDictionary ownResources = (COSDictionary) own;
+            return ownResources.containsKey(COSName.FONT) || ownResources.containsKey(COSName.XOBJECT);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.doctell.app.model.pdf;
+
+/**
+ * Uniform grid over the word boxes of one page, for finding the word under a finger.
+ * <p>
+ * Cells are sized so each holds a few words; every word is listed in each cell its box touches,
+ * packed into one int array (cell {@code c} owns {@code words[cellStart[c], cellStart[c + 1])}).
+ * A lookup only visits the cells around the point, so it costs the same on a dense page as on
+ * a sparse one. Coordinates are page points like {@link PageLayout}.
+ */
+public final class WordGrid {
+
+    // aim for about this many words per cell
+    private static final int WORDS_PER_CELL = 4;
+    private static final int MAX_CELLS_PER_AXIS = 64;
+
+    private final PageLayout layout;
+    private final float originX, originY;
+    private final float cellW, cellH;
+    private final int cols, rows;
+    private final int[] cellStart;
+    private final int[] words;
+
+    private WordGrid(PageLayout layout, float originX, float originY, float cellW, float cellH,
+                     int cols, int rows, int[] cellStart, int[] words) {
+        this.layout = layout;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellW = cellW;
+        this.cellH = cellH;
+        this.cols = cols;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.words = words;
+    }
+
+    public static WordGrid build(PageLayout layout) {
+        int n = layout.wordCount;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, layout.x[i]);
+            minY = Math.min(minY, layout.y[i] - layout.h[i]);
+            maxX = Math.max(maxX, layout.x[i] + layout.w[i]);
+            maxY = Math.max(maxY, layout.y[i]);
+        }
+        if (n == 0) {
+            return new WordGrid(layout, 0, 0, 1, 1, 1, 1, new int[]{0, 0}, new int[0]);
+        }
+
+        float spanX = Math.max(1f, maxX - minX);
+        float spanY = Math.max(1f, maxY - minY);
+        // square-ish cells, about WORDS_PER_CELL words each
+        double cells = Math.max(1.0, n / (double) WORDS_PER_CELL);
+        double side = Math.sqrt(spanX * spanY / cells);
+        int cols = clamp((int) Math.ceil(spanX / side));
+        int rows = clamp((int) Math.ceil(spanY / side));
+        float cellW = spanX / cols;
+        float cellH = spanY / rows;
+
+        // counting pass, prefix sums, fill pass
+        int[] cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            int c0 = col(layout.x[i], minX, cellW, cols), c1 = col(layout.x[i] + layout.w[i], minX, cellW, cols);
+            int r0 = col(layout.y[i] - layout.h[i], minY, cellH, rows), r1 = col(layout.y[i], minY, cellH, rows);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) cellStart[r * cols + c + 1]++;
+            }
+        }
+        for (int c = 0; c < cols * rows; c++) cellStart[c + 1] += cellStart[c];
+        int[] fill = new int[cols * rows];
+        int[] words = new int[cellStart[cols * rows]];
+        for (int i = 0; i < n; i++) {
+            int c0 = col(layout.x[i], minX, cellW, cols), c1 = col(layout.x[i] + layout.w[i], minX, cellW, cols);
+            int r0 = col(layout.y[i] - layout.h[i], minY, cellH, rows), r1 = col(layout.y[i], minY, cellH, rows);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cell = r * cols + c;
+                    words[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+        return new WordGrid(layout, minX, minY, cellW, cellH, cols, rows, cellStart, words);
+    }
+
+    private static int clamp(int cells) {
+        return Math.max(1, Math.min(MAX_CELLS_PER_AXIS, cells));
+    }
+
+    private static int col(float v, float origin, float size, int count) {
+        int c = (int) ((v - origin) / size);
+        return Math.max(0, Math.min(count - 1, c));
+    }
+
+    /**
+     * Word whose box contains the point, else the nearest one within {@code slop} points,
+     * else -1.
+     */
+    public int wordAt(float px, float py, float slop) {
+        if (words.length == 0) return -1;
+        if (px < originX - slop || py < originY - slop
+                || px > originX + cols * cellW + slop || py > originY + rows * cellH + slop) {
+            return -1;
+        }
+        int c0 = col(px - slop, originX, cellW, cols), c1 = col(px + slop, originX, cellW, cols);
+        int r0 = col(py - slop, originY, cellH, rows), r1 = col(py + slop, originY, cellH, rows);
+
+        int best = -1;
+        float bestDist = slop * slop;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = words[k];
+                    float left = layout.x[i], right = left + layout.w[i];
+                    float bottom = layout.y[i], top = bottom - layout.h[i];
+                    float dx = px < left ? left - px : (px > right ? px - right : 0f);
+                    float dy = py < top ? top - py : (py > bottom ? py - bottom : 0f);
+                    if (dx == 0f && dy == 0f) return i;
+                    float d = dx * dx + dy * dy;
+                    if (d <= bestDist) {
+                        bestDist = d;
+                        best = i;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
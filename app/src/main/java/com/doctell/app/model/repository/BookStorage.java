@@ -11,6 +11,7 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.doctell.app.model.analytics.DocTellAnalytics;
 import com.doctell.app.model.entity.Book;
+import com.doctell.app.model.pdf.PageTextIndex;
 import com.doctell.app.model.utils.FileUtils;
 import com.doctell.app.model.voice.media.ReaderService;
 
@@ -165,6 +166,7 @@ public class BookStorage {
             // Delete physical files
             if (bookToRemove.getLocalPath() != null) {
                 new File(bookToRemove.getLocalPath()).delete();
+                PageTextIndex.indexFileFor(ctx, bookToRemove.getLocalPath()).delete();
             }
             if (bookToRemove.getThumbnailPath() != null) {
                 new File(bookToRemove.getThumbnailPath()).delete();
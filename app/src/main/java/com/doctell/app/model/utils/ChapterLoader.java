@@ -5,6 +5,7 @@ import android.os.Looper;
 import android.util.Log;
 
 import com.doctell.app.model.entity.ChapterItem;
+import com.doctell.app.model.pdf.PdfLoader;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 import com.tom_roush.pdfbox.pdmodel.PDDocumentCatalog;
 import com.tom_roush.pdfbox.pdmodel.PDPage;
@@ -16,7 +17,6 @@ import com.tom_roush.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDoc
 import com.tom_roush.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import com.tom_roush.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -32,12 +32,19 @@ public class ChapterLoader {
         void onChaptersLoaded(List<ChapterItem> chapters);
     }
 
-    public void loadChaptersAsync(String bookLocalPath, Callback callback) {
+    /**
+     * Reads the outline from the session's document once it is parsed, instead of opening
+     * the file a second time.
+     */
+    public void loadChaptersAsync(PdfLoader.PdfSession session, Callback callback) {
         executor.submit(() -> {
             List<ChapterItem> result = null;
             try {
-                result = loadChaptersInternal(bookLocalPath);
-            } catch (IOException e) {
+                PDDocument doc = session.awaitDocument();
+                synchronized (session.getDocumentLock()) {
+                    result = loadChaptersInternal(doc);
+                }
+            } catch (IOException | RuntimeException e) {
                 Log.e("ChapterLoader", "Error loading chapters", e);
             }
 
@@ -47,33 +54,24 @@ public class ChapterLoader {
         });
     }
 
-    private List<ChapterItem> loadChaptersInternal(String bookLocalPath) throws IOException {
-        PDDocument doc = null;
-        try {
-            doc = PDDocument.load(new File(bookLocalPath));
-            PDDocumentCatalog catalog = doc.getDocumentCatalog();
-            List<ChapterItem> chapters = new ArrayList<>();
+    private List<ChapterItem> loadChaptersInternal(PDDocument doc) throws IOException {
+        PDDocumentCatalog catalog = doc.getDocumentCatalog();
+        List<ChapterItem> chapters = new ArrayList<>();
 
-            if (catalog == null) {
-                Log.w("ChapterLoader", "No document catalog found");
-                return null;
-            }
-
-            PDDocumentOutline outline = catalog.getDocumentOutline();
-
-            if (outline == null || !outline.hasChildren()) {
-                Log.w("ChapterLoader", "No outline structure found");
-                return null;
-            }
+        if (catalog == null) {
+            Log.w("ChapterLoader", "No document catalog found");
+            return null;
+        }
 
-            collectOutline(doc, outline, chapters, 0);
-            return chapters;
+        PDDocumentOutline outline = catalog.getDocumentOutline();
 
-        } finally {
-            if (doc != null) {
-                doc.close();
-            }
+        if (outline == null || !outline.hasChildren()) {
+            Log.w("ChapterLoader", "No outline structure found");
+            return null;
         }
+
+        collectOutline(doc, outline, chapters, 0);
+        return chapters;
     }
 
     private static void collectOutline(PDDocument doc,
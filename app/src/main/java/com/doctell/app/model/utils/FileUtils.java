@@ -4,6 +4,7 @@ import android.content.Context;
 import android.util.Log;
 
 import com.doctell.app.model.entity.Book;
+import com.doctell.app.model.pdf.PageTextIndex;
 
 import java.io.File;
 import java.util.HashSet;
@@ -15,14 +16,19 @@ public class FileUtils {
     public static void cleanOrphanedFiles(Context ctx, List<Book> currentBooks) {
         Set<String> validPaths = new HashSet<>();
         for (Book b : currentBooks) {
-            if (b.getLocalPath() != null) validPaths.add(b.getLocalPath());
+            if (b.getLocalPath() != null) {
+                validPaths.add(b.getLocalPath());
+                validPaths.add(PageTextIndex.indexFileFor(ctx, b.getLocalPath()).getAbsolutePath());
+            }
             if (b.getThumbnailPath() != null) validPaths.add(b.getThumbnailPath());
         }
         File docsDir = new File(ctx.getFilesDir(), "docs");
         File thumbsDir = new File(ctx.getFilesDir(), "thumbs");
+        File indexDir = new File(ctx.getFilesDir(), "index");
 
         deleteUnknownFiles(docsDir, validPaths);
         deleteUnknownFiles(thumbsDir, validPaths);
+        deleteUnknownFiles(indexDir, validPaths);
     }
 
     private static void deleteUnknownFiles(File directory, Set<String> validPaths) {
@@ -19,7 +19,9 @@ import com.doctell.app.model.entity.Prefs;
 import com.doctell.app.model.voice.notPublic.TtsEngineProvider;
 import com.doctell.app.model.voice.notPublic.TtsEngineType;
 
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class BaseTtsEngine implements TtsEngineStrategy {
@@ -32,6 +34,26 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
 
     protected String lastText;
     protected int lastIndex = -1;
+    // chunks handed to the engine and not finished yet, in speaking order
+    protected final Map<Integer, String> queued = new LinkedHashMap<>();
+
+    // latest word range, handed to the main thread by one reused runnable
+    private final Object rangeLock = new Object();
+    private String rangeId;
+    private int rangeStart, rangeEnd;
+    private boolean rangePosted;
+    private final Runnable rangeDispatch = () -> {
+        String id;
+        int start, end;
+        synchronized (rangeLock) {
+            id = rangeId;
+            start = rangeStart;
+            end = rangeEnd;
+            rangePosted = false;
+        }
+        TtsEngineListener l = engineListener;
+        if (l != null) l.onEngineRangeStart(id, start, end);
+    };
 
     protected String currentLangCode;
     protected float currentRate;
@@ -122,6 +144,7 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
             @Override
             public void onStart(String id) {
                 speaking = true;
+                markStarted(id);
                 if (engineListener != null) {
                     main.post(() -> engineListener.onEngineChunkStart(id));
                 }
@@ -131,11 +154,17 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
             public void onDone(String id) {
                 Log.d("BaseTtsEngine", "onDone id=" + id);
                 speaking = false;
+                markDone(id);
                 if (engineListener != null) {
                     main.post(() -> engineListener.onEngineChunkDone(id));
                 }
             }
 
+            @Override
+            public void onRangeStart(String id, int start, int end, int frame) {
+                postRange(id, start, end);
+            }
+
             @Override
             public void onError(String id) {
                 Log.d("BaseTtsEngine","onErrorInternal form onError in UtteranceProgressListener G");
@@ -154,6 +183,64 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
         };
     }
 
+    /**
+     * Forwards a word range to the listener on the main thread. Ranges arriving faster than the
+     * main thread drains them collapse into the newest one, without allocating.
+     */
+    protected void postRange(String utteranceId, int start, int end) {
+        if (engineListener == null) return;
+        synchronized (rangeLock) {
+            rangeId = utteranceId;
+            rangeStart = start;
+            rangeEnd = end;
+            if (rangePosted) return;
+            rangePosted = true;
+        }
+        main.post(rangeDispatch);
+    }
+
+    /** The engine moved on to a queued chunk: that one is now the one to resume. */
+    private void markStarted(String utteranceId) {
+        int index = chunkIndex(utteranceId);
+        if (index < 0) return;
+        synchronized (queued) {
+            String text = queued.get(index);
+            if (text != null) {
+                lastText = text;
+                lastIndex = index;
+            }
+        }
+    }
+
+    private void markDone(String utteranceId) {
+        int index = chunkIndex(utteranceId);
+        if (index < 0) return;
+        synchronized (queued) {
+            queued.remove(index);
+        }
+    }
+
+    private static int chunkIndex(String utteranceId) {
+        if (utteranceId == null || !utteranceId.startsWith("CHUNK_")) return -1;
+        try {
+            return Integer.parseInt(utteranceId.substring("CHUNK_".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Hands the chunks queued after {@code index} to the engine again, e.g. after a QUEUE_FLUSH re-speak. */
+    protected void requeueAfter(int index) {
+        if (tts == null) return;
+        synchronized (queued) {
+            for (Map.Entry<Integer, String> e : queued.entrySet()) {
+                if (e.getKey() > index) {
+                    tts.speak(e.getValue(), TextToSpeech.QUEUE_ADD, params, "CHUNK_" + e.getKey());
+                }
+            }
+        }
+    }
+
     protected void onErrorInternal(String utteranceId, int errorCode) {
         speaking = false;
         if (engineListener != null) {
@@ -238,21 +325,59 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
 
         lastText = text;
         lastIndex = index;
+        synchronized (queued) {
+            queued.clear();
+            queued.put(index, text);
+        }
 
         String utteranceId = "CHUNK_" + index;
         int result = tts.speak(text, TextToSpeech.QUEUE_FLUSH, params, utteranceId);
+        if (result == TextToSpeech.ERROR) {
+            onSpeakFailed(utteranceId);
+        }
+    }
 
+    @Override
+    public void queueChunk(String text, int index) {
+        if (tts == null) {
+            speakChunk(text, index);
+            return;
+        }
+        synchronized (queued) {
+            queued.put(index, text);
+        }
+
+        String utteranceId = "CHUNK_" + index;
+        int result = tts.speak(text, TextToSpeech.QUEUE_ADD, params, utteranceId);
         if (result == TextToSpeech.ERROR) {
-            Log.e("BaseTtsEngine", "TTS speak failed (ERROR), attempting recovery...");
-            DocTellAnalytics.ttsError(app,"TextToSpeech.ERROR = tts.speak");
-            try {
-                tts.shutdown();
-            } catch (Exception ignored) {}
-            tts = null;
-            recreateTts();
-            if (engineListener != null) {
-                main.post(() -> engineListener.onEngineError(utteranceId));
-            }
+            onSpeakFailed(utteranceId);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 3;
+    }
+
+    // speak() streams, so long utterances only cost restart time on pause
+    private static final long MIN_CHUNK_MS = 1500;
+    private static final long MAX_CHUNK_MS = 12000;
+
+    @Override
+    public ChunkPlanner.Window getChunkWindow() {
+        return ChunkPlanner.Window.forDuration(MIN_CHUNK_MS, MAX_CHUNK_MS, currentRate);
+    }
+
+    private void onSpeakFailed(String utteranceId) {
+        Log.e("BaseTtsEngine", "TTS speak failed (ERROR), attempting recovery...");
+        DocTellAnalytics.ttsError(app,"TextToSpeech.ERROR = tts.speak");
+        try {
+            tts.shutdown();
+        } catch (Exception ignored) {}
+        tts = null;
+        recreateTts();
+        if (engineListener != null) {
+            main.post(() -> engineListener.onEngineError(utteranceId));
         }
     }
 
@@ -341,12 +466,19 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
         if (tts != null) {
             tts.stop();
         }
+        synchronized (queued) {
+            queued.clear();
+        }
     }
 
     @Override
     public void resume() {
         if (tts == null) return;
         if (lastText == null || lastIndex < 0) return;
+        synchronized (queued) {
+            queued.clear();
+            queued.put(lastIndex, lastText);
+        }
         String utteranceId = "CHUNK_" + lastIndex;
         tts.speak(lastText, TextToSpeech.QUEUE_FLUSH, params, utteranceId);
     }
@@ -357,6 +489,9 @@ public abstract class BaseTtsEngine implements TtsEngineStrategy {
             tts.stop();
             speaking = false;
         }
+        synchronized (queued) {
+            queued.clear();
+        }
     }
 
     @Override
@@ -0,0 +1,673 @@
+package com.doctell.app.model.voice;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.speech.tts.Voice;
+import android.util.Log;
+
+import com.doctell.app.model.entity.Prefs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Engine that renders upcoming chunks with {@link TextToSpeech#synthesizeToFile} into a bounded
+ * ring of PCM buffers and plays them through its own {@link AudioTrack}.
+ * <p>
+ * Engine latency is hidden behind the ring, pause/resume is sample accurate (the track is just
+ * paused), and since we own the audio output the looping silence from SilentPlayer is not needed.
+ * Chunks heard before are played from {@link TtsAudioCache} without asking the engine again.
+ */
+public class BufferedTtsEngine extends BaseTtsEngine {
+
+    private static final String TAG = "BufferedTtsEngine";
+
+    private static final int WRITE_BLOCK_MS = 40;
+    private static final String SYNTH_PREFIX = "SYNTH_";
+
+    private static BufferedTtsEngine instance;
+
+    public static BufferedTtsEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new BufferedTtsEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public static boolean isEnabled(Context ctx) {
+        return ctx.getSharedPreferences(Prefs.DOCTELL_PREFS.toString(), Context.MODE_PRIVATE)
+                .getBoolean(Prefs.BUFFERED_AUDIO.toString(), false);
+    }
+
+    /**
+     * The buffered engine when the user turned it on, otherwise {@code fallback}.
+     * It picks a network voice when the fallback is the cloud engine.
+     */
+    public static TtsEngineStrategy select(Context ctx, TtsEngineStrategy fallback) {
+        if (!isEnabled(ctx)) return fallback;
+        BufferedTtsEngine engine = getInstance(ctx);
+        engine.setPreferNetworkVoice(fallback instanceof CloudTtsEngine);
+        SharedPreferences prefs = ctx.getSharedPreferences(Prefs.DOCTELL_PREFS.toString(), Context.MODE_PRIVATE);
+        engine.configure(prefs.getInt(Prefs.BUFFER_DEPTH.toString(), RingBudget.DEFAULT_DEPTH),
+                prefs.getLong(Prefs.BUFFER_MEMORY.toString(), RingBudget.DEFAULT_MEMORY_CEILING));
+        return engine;
+    }
+
+    private static final class Request {
+        final int index;
+        final String text;
+        final int generation;
+        String cacheKey;
+        // word ranges reported while rendering, as (frame, start, end) triples
+        int[] ranges;
+        int rangeCount;
+
+        Request(int index, String text, int generation) {
+            this.index = index;
+            this.text = text;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Mark {
+        final int index;
+        final long startFrame;
+        final long endFrame;
+        final int[] ranges;
+        final int rangeCount;
+        int nextRange;
+        boolean started;
+
+        Mark(int index, long startFrame, long endFrame, int[] ranges, int rangeCount) {
+            this.index = index;
+            this.startFrame = startFrame;
+            this.endFrame = endFrame;
+            this.ranges = ranges;
+            this.rangeCount = rangeCount;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Request> toSynth = new ArrayDeque<>();
+    private final ArrayDeque<WavPcm> ring = new ArrayDeque<>();
+    private final RingBudget budget = new RingBudget();
+    private final Set<Integer> held = new HashSet<>();
+    private final File synthDir;
+    private final TtsAudioCache cache;
+    private final ExecutorService synthWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "BufferedTtsSynth");
+        t.setPriority(Thread.NORM_PRIORITY + 1);
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile String voiceName;
+    private volatile boolean preferNetworkVoice;
+    private Request synthesizing;
+    private int generation;
+    private boolean paused;
+    private volatile float volume = 1.0f;
+
+    private BufferedTtsEngine(Context context) {
+        super(context);
+        synthDir = new File(app.getCacheDir(), "tts_synth");
+        if (!synthDir.exists()) synthDir.mkdirs();
+        cache = TtsAudioCache.getInstance(app);
+        Thread player = new Thread(this::playbackLoop, "BufferedTtsPlayer");
+        player.setPriority(Thread.MAX_PRIORITY);
+        player.setDaemon(true);
+        player.start();
+        init(context);
+    }
+
+    @Override
+    protected boolean acceptVoice(Voice v, Locale engineLanguage) {
+        return v.isNetworkConnectionRequired() == preferNetworkVoice
+                && v.getLocale().equals(engineLanguage);
+    }
+
+    private void setPreferNetworkVoice(boolean network) {
+        if (preferNetworkVoice == network) return;
+        preferNetworkVoice = network;
+        voiceName = null;
+        if (tts != null) recreateTts();
+    }
+
+    /**
+     * The engine is created ({@link #init}), replaced and shut down holding this object's
+     * monitor; synthesis takes it too, so it never calls into an engine being torn down.
+     */
+    @Override
+    protected synchronized void recreateTts() {
+        voiceName = null;
+        super.recreateTts();
+    }
+
+    @Override
+    public void setLanguageByCode(String langCode) {
+        super.setLanguageByCode(langCode);
+        voiceName = null;
+    }
+
+    /** Ring size in chunks and bytes, see {@link RingBudget#configure}. */
+    public void configure(int depth, long memoryCeilingBytes) {
+        synchronized (lock) {
+            budget.configure(depth, memoryCeilingBytes);
+        }
+        submitNext();
+    }
+
+    public RingBudget.Stats getStats() {
+        synchronized (lock) {
+            return budget.getStats();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (lock) {
+            // the chunk being played plus a full ring
+            return budget.getDepth() + 1;
+        }
+    }
+
+    // a chunk is rendered whole before it plays, so long ones delay the first audio
+    private static final long MIN_CHUNK_MS = 2000;
+    private static final long MAX_CHUNK_MS = 7000;
+
+    @Override
+    public ChunkPlanner.Window getChunkWindow() {
+        return ChunkPlanner.Window.forDuration(MIN_CHUNK_MS, MAX_CHUNK_MS, currentRate);
+    }
+
+    // ---- control ----
+
+    @Override
+    public void speakChunk(String text, int index) {
+        if (tts == null) {
+            super.speakChunk(text, index);
+            return;
+        }
+        lastText = text;
+        lastIndex = index;
+        synchronized (lock) {
+            flushLocked();
+            paused = false;
+            enqueueLocked(text, index);
+        }
+        submitNext();
+    }
+
+    @Override
+    public void queueChunk(String text, int index) {
+        if (tts == null) {
+            super.queueChunk(text, index);
+            return;
+        }
+        synchronized (lock) {
+            if (held.contains(index)) return;
+            enqueueLocked(text, index);
+        }
+        submitNext();
+    }
+
+    @Override
+    public void pause() {
+        synchronized (lock) {
+            paused = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void resume() {
+        synchronized (lock) {
+            paused = false;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            flushLocked();
+            paused = false;
+        }
+        speaking = false;
+    }
+
+    @Override
+    public void setVolume(float targetVolume) {
+        super.setVolume(targetVolume);
+        volume = targetVolume;
+    }
+
+    /** Releases the engine; the player thread stays parked so a later {@link #init} works again. */
+    @Override
+    public synchronized void shutdown() {
+        synchronized (lock) {
+            flushLocked();
+            paused = false;
+        }
+        speaking = false;
+        super.shutdown();
+    }
+
+    private void enqueueLocked(String text, int index) {
+        held.add(index);
+        toSynth.add(new Request(index, text, generation));
+    }
+
+    /** Drops everything buffered; the player thread resets the track when it sees the new generation. */
+    private void flushLocked() {
+        generation++;
+        toSynth.clear();
+        ring.clear();
+        held.clear();
+        budget.cleared();
+        TextToSpeech engine = tts;
+        if (synthesizing != null && engine != null) {
+            engine.stop();
+        }
+        synthesizing = null;
+        lock.notifyAll();
+    }
+
+    // ---- synthesis ----
+
+    private void submitNext() {
+        synthWorker.execute(this::pump);
+    }
+
+    /**
+     * Fills the ring in order: cached chunks go straight in, the first miss is handed to the
+     * engine and the pump stops until it is done. Runs on the synth worker only.
+     */
+    private void pump() {
+        while (true) {
+            Request next;
+            synchronized (lock) {
+                if (tts == null || synthesizing != null || toSynth.isEmpty()) return;
+                if (!budget.hasRoom()) return;
+                next = toSynth.poll();
+                next.rangeCount = 0; // a retried chunk reports its ranges again
+                synthesizing = next;
+            }
+
+            next.cacheKey = TtsAudioCache.key(next.text, voiceName(), currentLangCode, currentRate);
+            WavPcm hit = cache.get(next.cacheKey, next.index);
+            if (hit != null) {
+                synchronized (lock) {
+                    if (synthesizing == next) synthesizing = null;
+                    addToRingLocked(next, hit);
+                }
+                continue;
+            }
+
+            String id = SYNTH_PREFIX + next.generation + "_" + next.index;
+            int result;
+            synchronized (this) {
+                TextToSpeech engine = tts;
+                if (engine == null) {
+                    // shut down or being replaced meanwhile; the next submit picks the chunk up
+                    synchronized (lock) {
+                        if (synthesizing == next) {
+                            synthesizing = null;
+                            toSynth.addFirst(next);
+                        }
+                    }
+                    return;
+                }
+                result = engine.synthesizeToFile(next.text, params, synthFile(next), id);
+            }
+            if (result == TextToSpeech.ERROR) {
+                Log.e(TAG, "synthesizeToFile failed for chunk " + next.index);
+                synchronized (lock) {
+                    if (synthesizing == next) synthesizing = null;
+                }
+                onErrorInternal("CHUNK_" + next.index, TextToSpeech.ERROR);
+            }
+            return;
+        }
+    }
+
+    private void addToRingLocked(Request r, WavPcm pcm) {
+        if (r.generation != generation) return;
+        ring.add(pcm);
+        budget.added(pcm.data.length);
+        lock.notifyAll();
+    }
+
+    private String voiceName() {
+        String name = voiceName;
+        TextToSpeech engine = tts;
+        if (name == null && engine != null) {
+            Voice v = engine.getVoice();
+            name = v != null ? v.getName() : "default";
+            voiceName = name;
+        }
+        return name;
+    }
+
+    private File synthFile(Request r) {
+        return new File(synthDir, r.generation + "_" + r.index + ".wav");
+    }
+
+    private void onSynthDone(String utteranceId) {
+        synthWorker.execute(() -> readSynthesized(utteranceId));
+    }
+
+    private void readSynthesized(String utteranceId) {
+        Request done;
+        synchronized (lock) {
+            done = synthesizing;
+            if (done == null || !utteranceId.equals(SYNTH_PREFIX + done.generation + "_" + done.index)) {
+                return; // flushed while the engine was rendering
+            }
+            synthesizing = null;
+        }
+
+        File file = synthFile(done);
+        try {
+            WavPcm pcm = WavPcm.read(file, done.index);
+            synchronized (lock) {
+                pcm.ranges = done.ranges;
+                pcm.rangeCount = done.rangeCount;
+                addToRingLocked(done, pcm);
+            }
+            cache.put(done.cacheKey, pcm);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read synthesized chunk " + done.index, e);
+            onErrorInternal("CHUNK_" + done.index, TextToSpeech.ERROR_OUTPUT);
+        } finally {
+            file.delete();
+        }
+        pump();
+    }
+
+    @Override
+    protected UtteranceProgressListener getStandardListener() {
+        UtteranceProgressListener standard = super.getStandardListener();
+        return new UtteranceProgressListener() {
+            @Override
+            public void onStart(String id) {
+                if (!isSynth(id)) standard.onStart(id);
+            }
+
+            @Override
+            public void onDone(String id) {
+                if (isSynth(id)) {
+                    onSynthDone(id);
+                } else {
+                    standard.onDone(id);
+                }
+            }
+
+            @Override
+            public void onRangeStart(String id, int start, int end, int frame) {
+                if (isSynth(id)) {
+                    recordRange(id, start, end, frame);
+                } else {
+                    standard.onRangeStart(id, start, end, frame);
+                }
+            }
+
+            @Override
+            public void onError(String id) {
+                onError(id, TextToSpeech.ERROR);
+            }
+
+            @Override
+            public void onError(String id, int errorCode) {
+                if (!isSynth(id)) {
+                    standard.onError(id, errorCode);
+                    return;
+                }
+                synchronized (lock) {
+                    synthesizing = null;
+                }
+                standard.onError("CHUNK_" + id.substring(id.lastIndexOf('_') + 1), errorCode);
+            }
+
+            @Override
+            public void onStop(String id, boolean interrupted) {
+                if (!isSynth(id)) return;
+                synchronized (lock) {
+                    Request r = synthesizing;
+                    if (r == null || !id.equals(SYNTH_PREFIX + r.generation + "_" + r.index)) return;
+                    // stopped by someone else (e.g. the health ping), not by a flush: try again
+                    synthesizing = null;
+                    toSynth.addFirst(r);
+                }
+                submitNext();
+            }
+        };
+    }
+
+    /** Keeps a word range with the chunk being rendered; it is replayed against the playback head. */
+    private void recordRange(String id, int start, int end, int frame) {
+        synchronized (lock) {
+            Request r = synthesizing;
+            if (r == null || !id.equals(SYNTH_PREFIX + r.generation + "_" + r.index)) return;
+            if (r.ranges == null) {
+                r.ranges = new int[48];
+            } else if (r.rangeCount * 3 == r.ranges.length) {
+                r.ranges = Arrays.copyOf(r.ranges, r.ranges.length * 2);
+            }
+            int o = r.rangeCount * 3;
+            r.ranges[o] = frame;
+            r.ranges[o + 1] = start;
+            r.ranges[o + 2] = end;
+            r.rangeCount++;
+        }
+    }
+
+    private static boolean isSynth(String id) {
+        return id != null && id.startsWith(SYNTH_PREFIX);
+    }
+
+    // ---- playback ----
+
+    private void playbackLoop() {
+        AudioTrack track = null;
+        int trackRate = 0, trackChannels = 0;
+        int trackGeneration = -1;
+        long framesWritten = 0;
+        boolean trackPaused = true;
+        boolean stalled = false;
+        float trackVolume = -1f;
+        ArrayDeque<Mark> marks = new ArrayDeque<>();
+
+        WavPcm current = null;
+        int offset = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            boolean wantPause;
+            int gen;
+            synchronized (lock) {
+                wantPause = paused;
+                gen = generation;
+            }
+
+            if (gen != trackGeneration) {
+                // flushed: drop what the track still holds
+                if (track != null) {
+                    track.pause();
+                    track.flush();
+                    trackPaused = true;
+                }
+                framesWritten = 0;
+                marks.clear();
+                current = null;
+                trackGeneration = gen;
+                if (track != null) {
+                    budget.onTrackReleased();
+                    track.release();
+                    track = null;
+                }
+            }
+
+            if (wantPause != trackPaused && track != null) {
+                if (wantPause) track.pause(); else track.play();
+                trackPaused = wantPause;
+            }
+
+            if (track != null) {
+                if (trackVolume != volume) {
+                    trackVolume = volume;
+                    track.setVolume(trackVolume);
+                }
+                budget.onTrackUnderruns(track.getUnderrunCount());
+                fireMarks(track, marks);
+            }
+
+            if (current == null && !wantPause) {
+                synchronized (lock) {
+                    if (generation == trackGeneration && !ring.isEmpty()) {
+                        WavPcm head = ring.peek();
+                        boolean formatChange = track != null
+                                && (head.sampleRate != trackRate || head.channels != trackChannels);
+                        if (!formatChange || marks.isEmpty()) {
+                            current = ring.poll();
+                            budget.removed(current.data.length);
+                            offset = 0;
+                        }
+                    }
+                }
+                if (current != null) {
+                    stalled = false;
+                    submitNext();
+                    if (track == null || current.sampleRate != trackRate || current.channels != trackChannels) {
+                        if (track != null) {
+                            budget.onTrackReleased();
+                            track.release();
+                        }
+                        track = createTrack(current.sampleRate, current.channels);
+                        trackRate = current.sampleRate;
+                        trackChannels = current.channels;
+                        framesWritten = 0;
+                        trackPaused = true;
+                        trackVolume = -1f;
+                    }
+                    long frames = current.data.length / (2L * current.channels);
+                    marks.add(new Mark(current.index, framesWritten, framesWritten + frames,
+                            current.ranges, current.rangeCount));
+                    framesWritten += frames;
+                    if (trackPaused) {
+                        track.play();
+                        trackPaused = false;
+                    }
+                } else if (marks.isEmpty() && hasPendingWork() && !stalled) {
+                    stalled = true;
+                    budget.onUnderrun();
+                    Log.w(TAG, "Underrun, nothing synthesized yet: " + getStats());
+                }
+            }
+
+            if (current != null && !wantPause && track != null) {
+                int block = Math.max(2, current.sampleRate * current.channels * 2 * WRITE_BLOCK_MS / 1000);
+                int len = Math.min(block, current.data.length - offset);
+                int n = track.write(current.data, offset, len, AudioTrack.WRITE_NON_BLOCKING);
+                if (n > 0) offset += n;
+                if (offset >= current.data.length) current = null;
+                if (n > 0) continue;
+            }
+
+            // park while paused or idle, poll while audio is in flight
+            synchronized (lock) {
+                try {
+                    if (generation != gen || paused != wantPause) continue;
+                    if (wantPause || (current == null && marks.isEmpty() && ring.isEmpty())) {
+                        lock.wait();
+                    } else if (current != null || !marks.isEmpty()) {
+                        lock.wait(10);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        if (track != null) track.release();
+    }
+
+    private boolean hasPendingWork() {
+        synchronized (lock) {
+            return synthesizing != null || !toSynth.isEmpty();
+        }
+    }
+
+    /** Reports chunk start/done once the playback head actually reaches them. */
+    private void fireMarks(AudioTrack track, ArrayDeque<Mark> marks) {
+        long head = track.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+        while (!marks.isEmpty()) {
+            Mark m = marks.peek();
+            if (!m.started && head >= m.startFrame) {
+                m.started = true;
+                speaking = true;
+                lastIndex = m.index;
+                postChunkStart(m.index);
+            }
+            if (m.started) {
+                // newest range the head has passed; older ones are skipped, not replayed
+                int last = -1;
+                while (m.nextRange < m.rangeCount
+                        && head >= m.startFrame + m.ranges[m.nextRange * 3]) {
+                    last = m.nextRange++;
+                }
+                if (last >= 0) {
+                    postRange("CHUNK_" + m.index, m.ranges[last * 3 + 1], m.ranges[last * 3 + 2]);
+                }
+            }
+            if (head < m.endFrame) break;
+            marks.poll();
+            synchronized (lock) {
+                held.remove(m.index);
+            }
+            speaking = false;
+            postChunkDone(m.index);
+        }
+    }
+
+    private void postChunkStart(int index) {
+        TtsEngineListener l = engineListener;
+        if (l != null) main.post(() -> l.onEngineChunkStart("CHUNK_" + index));
+    }
+
+    private void postChunkDone(int index) {
+        TtsEngineListener l = engineListener;
+        if (l != null) main.post(() -> l.onEngineChunkDone("CHUNK_" + index));
+    }
+
+    private static AudioTrack createTrack(int sampleRate, int channels) {
+        int channelMask = channels == 2
+                ? AudioFormat.CHANNEL_OUT_STEREO
+                : AudioFormat.CHANNEL_OUT_MONO;
+        int minBuffer = AudioTrack.getMinBufferSize(
+                sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT);
+        return new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(channelMask)
+                        .build())
+                .setBufferSizeInBytes(Math.max(minBuffer, sampleRate * channels * 2 / 5))
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .build();
+    }
+}
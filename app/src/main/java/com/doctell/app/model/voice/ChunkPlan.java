@@ -0,0 +1,89 @@
+package com.doctell.app.model.voice;
+
+import java.util.List;
+
+/**
+ * Utterances planned from a page's sentences, with the way back from each one to the sentences
+ * it speaks. A chunk is either several whole sentences joined by a space, or one piece of a
+ * single long sentence. Built by {@link ChunkPlanner}.
+ */
+public final class ChunkPlan {
+
+    private final List<String> sentences;
+    private final String[] chunks;
+    private final int[] firstSentence;  // per chunk
+    private final int[] lastSentence;   // per chunk, inclusive
+    private final int[] startOffset;    // per chunk, where it starts in its first sentence's text
+    private final int[] firstChunk;     // per sentence
+
+    ChunkPlan(List<String> sentences, String[] chunks, int[] firstSentence, int[] lastSentence,
+              int[] startOffset) {
+        this.sentences = sentences;
+        this.chunks = chunks;
+        this.firstSentence = firstSentence;
+        this.lastSentence = lastSentence;
+        this.startOffset = startOffset;
+        this.firstChunk = new int[sentences.size()];
+        for (int c = chunks.length - 1; c >= 0; c--) {
+            for (int s = firstSentence[c]; s <= lastSentence[c]; s++) firstChunk[s] = c;
+        }
+    }
+
+    public List<String> getSentences() {
+        return sentences;
+    }
+
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    /** Text handed to the engine. */
+    public String getChunk(int chunk) {
+        return chunks[chunk];
+    }
+
+    public int firstSentenceOf(int chunk) {
+        return firstSentence[chunk];
+    }
+
+    public int lastSentenceOf(int chunk) {
+        return lastSentence[chunk];
+    }
+
+    /** Whether the chunk finishes its last sentence (false for all but the last piece of a split). */
+    public boolean endsSentence(int chunk) {
+        return chunk + 1 >= chunks.length || firstSentence[chunk + 1] != lastSentence[chunk];
+    }
+
+    /** Chunk to start speaking from to read a sentence from its beginning. */
+    public int chunkOfSentence(int sentence) {
+        if (firstChunk.length == 0) return 0;
+        return firstChunk[Math.max(0, Math.min(firstChunk.length - 1, sentence))];
+    }
+
+    /**
+     * Maps a char offset in a chunk's text to its sentence and the offset in that sentence's
+     * text, written to {@code out} as {sentence, offset}. Returns false if it falls on the
+     * space between two merged sentences.
+     */
+    public boolean locate(int chunk, int offset, int[] out) {
+        int s = firstSentence[chunk];
+        if (s == lastSentence[chunk]) {
+            out[0] = s;
+            out[1] = startOffset[chunk] + offset;
+            return true;
+        }
+        int pos = 0;
+        for (; s <= lastSentence[chunk]; s++) {
+            int len = sentences.get(s).length();
+            if (offset < pos + len) {
+                if (offset < pos) return false;
+                out[0] = s;
+                out[1] = offset - pos;
+                return true;
+            }
+            pos += len + 1; // joined with one space
+        }
+        return false;
+    }
+}
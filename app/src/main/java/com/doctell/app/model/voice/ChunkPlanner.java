@@ -0,0 +1,146 @@
+package com.doctell.app.model.voice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns a page's sentences into utterances of a comfortable length.
+ * <p>
+ * Every utterance costs the engine a fixed start-up, so headings, list items and figure labels
+ * are merged with their neighbours until they reach the window's minimum. Run-on sentences and
+ * tables are cut at the best clause or word break under the maximum, which keeps
+ * time-to-first-audio and pause/resume restarts short. The window comes from the engine
+ * ({@link TtsEngineStrategy#getChunkWindow()}) and scales with the speech rate.
+ */
+public final class ChunkPlanner {
+
+    /** Rough speaking speed of the default voices at rate 1.0. */
+    static final float CHARS_PER_SECOND = 15f;
+
+    /** Target utterance length, in chars at the current rate. */
+    public static final class Window {
+        public final int minChars;
+        public final int maxChars;
+
+        public Window(int minChars, int maxChars) {
+            this.minChars = Math.max(0, minChars);
+            this.maxChars = Math.max(this.minChars + 1, maxChars);
+        }
+
+        /** Window for a duration range at a speech rate (1.0 = normal). */
+        public static Window forDuration(long minMs, long maxMs, float rate) {
+            float cps = CHARS_PER_SECOND * Math.max(0.1f, rate);
+            return new Window(Math.round(minMs * cps / 1000f), Math.round(maxMs * cps / 1000f));
+        }
+    }
+
+    private ChunkPlanner() {}
+
+    public static ChunkPlan plan(List<String> sentences, Window window) {
+        return plan(sentences, window, 0);
+    }
+
+    /**
+     * Same, with a chunk starting exactly at {@code startSentence}, so speaking can begin there
+     * rather than at an earlier sentence it would otherwise be merged with.
+     */
+    public static ChunkPlan plan(List<String> sentences, Window window, int startSentence) {
+        List<String> chunks = new ArrayList<>(sentences.size());
+        IntList first = new IntList(), last = new IntList(), offset = new IntList();
+
+        StringBuilder group = new StringBuilder();
+        int groupFirst = -1;
+        for (int s = 0; s < sentences.size(); s++) {
+            String text = sentences.get(s);
+
+            if (text.length() > window.maxChars) {
+                if (groupFirst >= 0) {
+                    add(chunks, first, last, offset, group.toString(), groupFirst, s - 1, 0);
+                    group.setLength(0);
+                    groupFirst = -1;
+                }
+                split(text, s, window, chunks, first, last, offset);
+                continue;
+            }
+
+            if (groupFirst >= 0 && (s == startSentence || group.length() >= window.minChars
+                    || group.length() + 1 + text.length() > window.maxChars)) {
+                add(chunks, first, last, offset, group.toString(), groupFirst, s - 1, 0);
+                group.setLength(0);
+                groupFirst = -1;
+            }
+            if (groupFirst < 0) {
+                groupFirst = s;
+            } else {
+                group.append(' ');
+            }
+            group.append(text);
+        }
+        if (groupFirst >= 0) {
+            add(chunks, first, last, offset, group.toString(), groupFirst, sentences.size() - 1, 0);
+        }
+
+        return new ChunkPlan(sentences, chunks.toArray(new String[0]),
+                first.toArray(), last.toArray(), offset.toArray());
+    }
+
+    /** Cuts one long sentence into pieces no longer than the maximum. */
+    private static void split(String text, int sentence, Window window, List<String> chunks,
+                              IntList first, IntList last, IntList offset) {
+        int from = 0;
+        int len = text.length();
+        while (from < len) {
+            int cut = len - from <= window.maxChars ? len : breakBefore(text, from, window);
+            String piece = text.substring(from, cut).trim();
+            if (!piece.isEmpty()) {
+                int lead = from;
+                while (text.charAt(lead) == ' ') lead++;
+                add(chunks, first, last, offset, piece, sentence, sentence, lead);
+            }
+            from = cut;
+        }
+    }
+
+    /**
+     * End of the next piece: after the last clause mark in the second half of the window,
+     * else at the last space in it, else a hard cut at the maximum.
+     */
+    private static int breakBefore(String text, int from, Window window) {
+        int limit = from + window.maxChars;
+        int floor = from + Math.max(1, Math.max(window.minChars, window.maxChars / 2));
+        for (int i = limit - 1; i >= floor; i--) {
+            char c = text.charAt(i);
+            if ((c == ',' || c == ';' || c == ':' || c == '\u2014' || c == ')')
+                    && i + 1 < text.length() && text.charAt(i + 1) == ' ') {
+                return i + 1;
+            }
+        }
+        for (int i = limit; i > from; i--) {
+            if (text.charAt(i) == ' ') return i;
+        }
+        return limit;
+    }
+
+    private static void add(List<String> chunks, IntList first, IntList last, IntList offset,
+                            String text, int firstSentence, int lastSentence, int startOffset) {
+        chunks.add(text);
+        first.add(firstSentence);
+        last.add(lastSentence);
+        offset.add(startOffset);
+    }
+
+    private static final class IntList {
+        private int[] a = new int[16];
+        private int n;
+
+        void add(int v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(a, n);
+        }
+    }
+}
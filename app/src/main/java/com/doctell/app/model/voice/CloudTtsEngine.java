@@ -49,6 +49,8 @@ public class CloudTtsEngine extends BaseTtsEngine {
 
                 String newId = "CHUNK_" + lastIndex;
                 tts.speak(lastText, TextToSpeech.QUEUE_FLUSH, null, newId);
+                // the flush dropped what was queued behind it
+                requeueAfter(lastIndex);
                 speaking = true;
                 return;
             }
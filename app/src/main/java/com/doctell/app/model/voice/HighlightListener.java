@@ -3,6 +3,8 @@ package com.doctell.app.model.voice;
 public interface HighlightListener {
     void onChunkStart(int index, String text);
     void onChunkDone(int index, String text);
+    /** Chars [start, end) of chunk {@code text} are being spoken; called at speech rate. */
+    void onChunkRange(int index, String text, int start, int end);
 
     void onPageFinished();
 }
@@ -0,0 +1,339 @@
+package com.doctell.app.model.voice;
+
+import com.doctell.app.model.entity.Noise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides which parts of a page are not worth reading aloud.
+ * <p>
+ * Two sources: a pattern set (the {@link Noise} watermarks and any added through
+ * {@link #withPatterns}) matched with one Aho-Corasick automaton, case-insensitively and with
+ * whitespace runs read as one space; and header/footer lines learned while the book is indexed
+ * ({@link LineLearner}), kept as 64-bit hashes of the line with digits folded, so "Page 12" and
+ * "Page 13" are the same line.
+ * <p>
+ * Lines made up only of noise are blanked before sentences are split, see {@link #maskLines};
+ * a sentence whose letters and digits are all covered by patterns is dropped, see {@link #isNoise}.
+ */
+public final class NoiseFilter {
+
+    /** Patterns from {@link Noise}, nothing learned. */
+    public static final NoiseFilter DEFAULT = new NoiseFilter(defaultPatterns(), new long[0]);
+
+    // lines from the top and the bottom of a page that may be a running header or footer
+    static final int EDGE_LINES = 2;
+    // longer lines are body text, not headers
+    static final int MAX_LINE_CHARS = 100;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // automaton: full transition table over the chars that occur in patterns, class 0 = any other
+    private final char[] classChars;     // sorted
+    private final int[] asciiClass;      // classOf for chars below 128
+    private final int[] delta;           // state * classes + class -> state
+    private final int classes;
+    private final int[] matchLength;     // per state, longest pattern ending there, 0 if none
+    private final long[] repeatedLines;  // sorted
+
+    public NoiseFilter(Collection<String> patterns, long[] repeatedLines) {
+        List<String> normalized = new ArrayList<>(patterns.size());
+        StringBuilder chars = new StringBuilder();
+        for (String p : patterns) {
+            String n = normalize(p);
+            if (n.isEmpty()) continue;
+            normalized.add(n);
+            chars.append(n);
+        }
+        char[] all = chars.toString().toCharArray();
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) all[distinct++] = all[i];
+        }
+        this.classChars = Arrays.copyOf(all, distinct);
+        this.classes = distinct + 1;
+        this.asciiClass = new int[128];
+        for (int i = 0; i < distinct; i++) {
+            if (classChars[i] < 128) asciiClass[classChars[i]] = i + 1;
+        }
+
+        // trie
+        int maxStates = 1;
+        for (String p : normalized) maxStates += p.length();
+        int[] go = new int[maxStates * classes];
+        Arrays.fill(go, -1);
+        int[] length = new int[maxStates];
+        int states = 1;
+        for (String p : normalized) {
+            int s = 0;
+            for (int i = 0; i < p.length(); i++) {
+                int c = classOf(p.charAt(i));
+                if (go[s * classes + c] < 0) go[s * classes + c] = states++;
+                s = go[s * classes + c];
+            }
+            length[s] = Math.max(length[s], p.length());
+        }
+
+        // failure links, breadth first, turning the trie into a full transition table
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int c = 0; c < classes; c++) {
+            int t = go[c];
+            if (t < 0) {
+                go[c] = 0;
+            } else {
+                fail[t] = 0;
+                queue[tail++] = t;
+            }
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            length[s] = Math.max(length[s], length[fail[s]]);
+            for (int c = 0; c < classes; c++) {
+                int t = go[s * classes + c];
+                int f = go[fail[s] * classes + c];
+                if (t < 0) {
+                    go[s * classes + c] = f;
+                } else {
+                    fail[t] = f;
+                    queue[tail++] = t;
+                }
+            }
+        }
+        this.delta = Arrays.copyOf(go, states * classes);
+        this.matchLength = Arrays.copyOf(length, states);
+
+        this.repeatedLines = repeatedLines.clone();
+        Arrays.sort(this.repeatedLines);
+    }
+
+    /** The {@link Noise} patterns and {@code extra} ones, e.g. watermarks a user added; nothing learned. */
+    public static NoiseFilter withPatterns(Collection<String> extra) {
+        if (extra == null || extra.isEmpty()) return DEFAULT;
+        List<String> patterns = defaultPatterns();
+        patterns.addAll(extra);
+        return new NoiseFilter(patterns, new long[0]);
+    }
+
+    /** This filter's patterns with the header/footer lines learned for one book. */
+    public NoiseFilter withRepeatedLines(long[] lines) {
+        if (lines == null || lines.length == 0) return this;
+        return new NoiseFilter(this, lines);
+    }
+
+    private NoiseFilter(NoiseFilter patterns, long[] lines) {
+        this.classChars = patterns.classChars;
+        this.asciiClass = patterns.asciiClass;
+        this.delta = patterns.delta;
+        this.classes = patterns.classes;
+        this.matchLength = patterns.matchLength;
+        this.repeatedLines = lines.clone();
+        Arrays.sort(this.repeatedLines);
+    }
+
+    private static List<String> defaultPatterns() {
+        List<String> out = new ArrayList<>();
+        for (Noise n : Noise.values()) out.add(n.toString());
+        return out;
+    }
+
+    /** Lower case with whitespace runs as one space, the form the automaton reads. */
+    private static String normalize(String p) {
+        String t = p.trim();
+        return SentenceSegmenter.text(t, 0, t.length()).toLowerCase(Locale.ROOT);
+    }
+
+    private int classOf(char c) {
+        if (c < 128) return asciiClass[c];
+        int i = Arrays.binarySearch(classChars, c);
+        return i < 0 ? 0 : i + 1;
+    }
+
+    private int step(int state, char c) {
+        if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+        else if (c >= 128) c = Character.toLowerCase(c);
+        return delta[state * classes + classOf(c)];
+    }
+
+    /**
+     * Whether every letter and digit of {@code text[start, end)} is part of a pattern match.
+     * True for ranges of only punctuation, which are silent anyway.
+     */
+    public boolean isNoise(CharSequence text, int start, int end) {
+        int state = 0;
+        int pending = -1; // position of the first letter or digit no match has covered yet
+        int pos = 0;      // position in the whitespace-collapsed stream
+        boolean inSpace = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (SentenceSegmenter.isSpace(c)) {
+                if (inSpace) continue;
+                inSpace = true;
+                c = ' ';
+            } else {
+                inSpace = false;
+                if (pending < 0 && Character.isLetterOrDigit(c)) pending = pos;
+            }
+            state = step(state, c);
+            int len = matchLength[state];
+            if (pending >= 0 && len > 0 && pending >= pos - len + 1) pending = -1;
+            pos++;
+        }
+        return pending < 0;
+    }
+
+    /** Same check on a whole String. */
+    public boolean isNoise(String text) {
+        return isNoise(text, 0, text.length());
+    }
+
+    /**
+     * The page with every noise line overwritten by spaces, so offsets still point into the
+     * original text. A line is noise if a pattern covers all of it, or if it is one of the
+     * page's edge lines and was learned as repeated. Returns {@code page} if nothing is blanked.
+     */
+    public CharSequence maskLines(CharSequence page) {
+        char[] masked = null;
+        int len = page.length();
+        int lines = repeatedLines.length > 0 ? countLines(page) : -1;
+        int lineNo = 0;
+        for (int ls = 0; ls < len; ) {
+            int le = ls;
+            while (le < len && page.charAt(le) != '\n') le++;
+            if (hasContent(page, ls, le)) {
+                boolean noise = (lines >= 0 && isEdge(lineNo, lines) && isRepeated(page, ls, le))
+                        || isNoise(page, ls, le);
+                if (noise) {
+                    if (masked == null) masked = page.toString().toCharArray();
+                    Arrays.fill(masked, ls, le, ' ');
+                }
+                lineNo++;
+            }
+            ls = le + 1;
+        }
+        return masked != null ? new String(masked) : page;
+    }
+
+    private boolean isRepeated(CharSequence page, int start, int end) {
+        long h = lineHash(page, start, end);
+        return h != 0 && Arrays.binarySearch(repeatedLines, h) >= 0;
+    }
+
+    /** Number of non-blank lines on a page. */
+    private static int countLines(CharSequence page) {
+        int count = 0;
+        int len = page.length();
+        for (int ls = 0; ls < len; ) {
+            int le = ls;
+            while (le < len && page.charAt(le) != '\n') le++;
+            if (hasContent(page, ls, le)) count++;
+            ls = le + 1;
+        }
+        return count;
+    }
+
+    private static boolean isEdge(int lineNo, int lines) {
+        return lineNo < EDGE_LINES || lineNo >= lines - EDGE_LINES;
+    }
+
+    private static boolean hasContent(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!SentenceSegmenter.isSpace(text.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * FNV-1a hash of a line built as it is scanned: lower case, whitespace runs as one space,
+     * every run of digits as one '#'. 0 for lines too long to be a header or without content.
+     */
+    static long lineHash(CharSequence text, int start, int end) {
+        while (start < end && SentenceSegmenter.isSpace(text.charAt(start))) start++;
+        while (end > start && SentenceSegmenter.isSpace(text.charAt(end - 1))) end--;
+        if (start == end || end - start > MAX_LINE_CHARS) return 0;
+        long h = FNV_OFFSET;
+        char prev = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (SentenceSegmenter.isSpace(c)) {
+                c = ' ';
+            } else if (Character.isDigit(c)) {
+                c = '#';
+            } else {
+                c = Character.toLowerCase(c);
+            }
+            if ((c == ' ' || c == '#') && c == prev) continue;
+            h = (h ^ c) * FNV_PRIME;
+            prev = c;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Counts the edge lines of every page while a book is indexed and keeps the ones found on
+     * enough pages to be a running header, footer or page number.
+     */
+    public static final class LineLearner {
+        // seen on at least this share of the pages, and never fewer than MIN_PAGES
+        static final float MIN_SHARE = 0.2f;
+        static final int MIN_PAGES = 4;
+
+        private final Map<Long, int[]> pagesPerLine = new HashMap<>();
+        private final long[] seen = new long[EDGE_LINES * 2];
+        private int pages;
+
+        public void addPage(CharSequence page) {
+            pages++;
+            int lines = countLines(page);
+            int n = 0;
+            int lineNo = 0;
+            int len = page.length();
+            for (int ls = 0; ls < len; ) {
+                int le = ls;
+                while (le < len && page.charAt(le) != '\n') le++;
+                if (hasContent(page, ls, le)) {
+                    if (isEdge(lineNo, lines)) {
+                        long h = lineHash(page, ls, le);
+                        if (h != 0 && !contains(seen, n, h)) {
+                            seen[n++] = h;
+                            int[] count = pagesPerLine.get(h);
+                            if (count == null) pagesPerLine.put(h, new int[]{1});
+                            else count[0]++;
+                        }
+                    }
+                    lineNo++;
+                }
+                ls = le + 1;
+            }
+        }
+
+        private static boolean contains(long[] a, int n, long v) {
+            for (int i = 0; i < n; i++) {
+                if (a[i] == v) return true;
+            }
+            return false;
+        }
+
+        /** Hashes of the lines that repeat across the book, for {@link #withRepeatedLines}. */
+        public long[] repeatedLines() {
+            int min = Math.max(MIN_PAGES, (int) Math.ceil(pages * MIN_SHARE));
+            long[] out = new long[pagesPerLine.size()];
+            int n = 0;
+            for (Map.Entry<Long, int[]> e : pagesPerLine.entrySet()) {
+                if (e.getValue()[0] >= min) out[n++] = e.getKey();
+            }
+            out = Arrays.copyOf(out, n);
+            Arrays.sort(out);
+            return out;
+        }
+    }
+}
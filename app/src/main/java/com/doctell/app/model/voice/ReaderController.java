@@ -20,15 +20,25 @@ import java.util.List;
 import java.util.Locale;
 
 public class ReaderController implements TtsEngineListener, PlaybackControl {
+    // the page's sentences; positions, highlights and navigation all count in sentences
     private List<String> chunks;
+    // what the engine actually speaks: sentences merged or split to the engine's window
+    private ChunkPlan plan;
     private String title;
     private int currentIndex;
+    private int currentChunk;
+    // sentence the highlight listener was last told about, -1 between sentences
+    private int spokenSentence = -1;
+    private final int[] located = new int[2];
     private boolean isPaused;
     private TtsEngineStrategy engine;
     private HighlightListener highlightListener;
     private Context ctx;
     private ReaderMediaController mediaController;
 
+    // last planned chunk handed to the engine; it keeps getQueueDepth() chunks so the next one starts without a round-trip
+    private int queuedUpTo = -1;
+
     private float normalVolume = 1.0f;
     private float duckVolume = 0.3f;
     private boolean pendingResume = false;
@@ -48,13 +58,13 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
                             Context ctx,
                             MediaNav mediaNav) {
         this.engine = engine;
-        this.chunks = chunks;
         this.title = title;
         this.highlightListener = highlightListener;
         this.mediaNav = mediaNav;
         this.ctx = ctx;
         engine.init(ctx);
         engine.setListener(this);
+        setChunks(chunks);
     }
 
     public void setMediaController(ReaderMediaController mediaController){this.mediaController = mediaController;}
@@ -68,13 +78,18 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
     }
 
     public void setChunks(List<String> chunks) {
-        this.chunks = chunks;
-        this.currentIndex = 0;
+        setChunks(chunks, 0);
     }
 
+    /** Takes a page's sentences and plans the utterances for them with the engine's window. */
     public void setChunks(List<String> chunks, int startSentence) {
         this.chunks = chunks;
+        this.plan = chunks != null
+                ? ChunkPlanner.plan(chunks, engine.getChunkWindow(), startSentence) : null;
         this.currentIndex = startSentence;
+        this.currentChunk = plan != null ? plan.chunkOfSentence(startSentence) : 0;
+        this.spokenSentence = -1;
+        this.queuedUpTo = -1;
     }
 
     public List<String> getChunks() {
@@ -93,6 +108,7 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
             Log.e("ReaderController", "Invalid index " + currentIndex + " for chunks size " + chunks.size());
             currentIndex = 0; // Reset to safe default
         }
+        currentChunk = chunkStartingAt(currentIndex);
 
         speakCurrent();
 
@@ -106,6 +122,7 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
         if (index >= chunks.size()) return;
 
         currentIndex = index;
+        currentChunk = chunkStartingAt(index);
         isPaused = false;
         speakCurrent();
         //String sentence = chunks.get(currentIndex);
@@ -115,6 +132,7 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
     public void pauseReading() {
         isPaused = true;
         engine.pause();
+        queuedUpTo = currentChunk;
         if (chunks != null && currentIndex >= 0 && currentIndex < chunks.size()) {
             mediaController.updateState(false, currentIndex, title);
         }
@@ -124,6 +142,8 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
         if (!isPaused) return;
         isPaused = false;
         engine.resume();
+        queuedUpTo = currentChunk;
+        fillQueue();
         if (chunks != null && currentIndex >= 0 && currentIndex < chunks.size()) {
             mediaController.updateState(true, currentIndex, title);
         }
@@ -133,52 +153,114 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
         isPaused = false;
         engine.stop();
         currentIndex = 0;
+        currentChunk = 0;
+        spokenSentence = -1;
+        queuedUpTo = -1;
         mediaController.stop();
     }
 
+    /**
+     * Chunk to speak from to start at a sentence. If the sentence was merged into a chunk with
+     * earlier ones, the page is planned again with a chunk starting at it.
+     */
+    private int chunkStartingAt(int sentence) {
+        int chunk = plan.chunkOfSentence(sentence);
+        if (plan.firstSentenceOf(chunk) == sentence || sentence < 0 || sentence >= chunks.size()) {
+            return chunk;
+        }
+        plan = ChunkPlanner.plan(chunks, engine.getChunkWindow(), sentence);
+        queuedUpTo = -1; // queued chunks were numbered by the old plan
+        return plan.chunkOfSentence(sentence);
+    }
+
     private void speakCurrent() {
-        if (chunks == null) return;
-        if (currentIndex < 0 || currentIndex >= chunks.size()) return;
-        String text = chunks.get(currentIndex);
-        engine.speakChunk(text, currentIndex);
+        if (plan == null) return;
+        if (currentChunk < 0 || currentChunk >= plan.getChunkCount()) return;
+        spokenSentence = -1;
+        engine.speakChunk(plan.getChunk(currentChunk), currentChunk);
+        queuedUpTo = currentChunk;
+        fillQueue();
+    }
+
+    /** Tops the engine queue up to {@link TtsEngineStrategy#getQueueDepth()} chunks from the current one. */
+    private void fillQueue() {
+        if (isPaused || plan == null) return;
+        int depth = engine.getQueueDepth();
+        while (queuedUpTo + 1 < plan.getChunkCount() && queuedUpTo - currentChunk < depth - 1) {
+            queuedUpTo++;
+            engine.queueChunk(plan.getChunk(queuedUpTo), queuedUpTo);
+        }
     }
 
     @Override
     public void onEngineChunkStart(String utteranceId) {
-        int index = parseIndex(utteranceId);
+        int chunk = parseIndex(utteranceId);
 
-        if (chunks == null || highlightListener == null) return;
-        if (index < 0 || index >= chunks.size()) return;
-        highlightListener.onChunkStart(index, chunks.get(index));
+        if (plan == null || highlightListener == null) return;
+        if (chunk < 0 || chunk >= plan.getChunkCount()) return;
+        // with a queue the engine moves on by itself; follow it
+        currentChunk = chunk;
+        int sentence = plan.firstSentenceOf(chunk);
+        // the later pieces of a split sentence keep its highlight
+        if (sentence != spokenSentence) enterSentence(sentence);
 
-        //String sentence = chunks.get(index);
-        mediaController.updateState(!isPaused, index, title);
+        mediaController.updateState(!isPaused, currentIndex, title);
     }
 
     @Override
-    public void onEngineChunkDone(String utteranceId) {
-        int index = parseIndex(utteranceId);
+    public void onEngineRangeStart(String utteranceId, int start, int end) {
+        if (plan == null || highlightListener == null || isPaused) return;
+        int chunk = parseIndex(utteranceId);
+        if (chunk != currentChunk || chunk < 0 || chunk >= plan.getChunkCount()) return;
+        if (!plan.locate(chunk, start, located)) return;
+        int sentence = located[0];
+        // inside a merged chunk the word ranges tell when the next sentence begins
+        if (sentence != spokenSentence) {
+            leaveSentence();
+            enterSentence(sentence);
+        }
+        highlightListener.onChunkRange(sentence, chunks.get(sentence), located[1], located[1] + (end - start));
+    }
+
+    private void enterSentence(int sentence) {
+        spokenSentence = sentence;
+        currentIndex = sentence;
+        highlightListener.onChunkStart(sentence, chunks.get(sentence));
+    }
 
-        // Clear highlight
-        if (chunks != null && highlightListener != null &&
-                index >= 0 && index < chunks.size()) {
-            highlightListener.onChunkDone(index, chunks.get(index));
+    private void leaveSentence() {
+        if (spokenSentence >= 0 && spokenSentence < chunks.size() && highlightListener != null) {
+            highlightListener.onChunkDone(spokenSentence, chunks.get(spokenSentence));
         }
+        spokenSentence = -1;
+    }
 
-        if (isPaused || chunks == null) return;
+    @Override
+    public void onEngineChunkDone(String utteranceId) {
+        int chunk = parseIndex(utteranceId);
+        if (plan == null || chunk < 0 || chunk >= plan.getChunkCount()) return;
 
-        currentIndex = index + 1;
+        // Clear highlight once the sentence is over, not after each piece of it
+        if (plan.endsSentence(chunk)) leaveSentence();
 
-        if (currentIndex < chunks.size()) {
-            speakCurrent();
-            //String sentence = chunks.get(currentIndex);
+        if (isPaused) return;
+
+        currentChunk = chunk + 1;
+
+        if (currentChunk < plan.getChunkCount()) {
+            currentIndex = plan.firstSentenceOf(currentChunk);
+            if (queuedUpTo < currentChunk) {
+                speakCurrent();
+            } else {
+                fillQueue();
+            }
             mediaController.updateState(true, currentIndex, title);
         } else {
             if (highlightListener != null) {
                 highlightListener.onPageFinished();
             }
             // We reached the end → consider this a stop
-            mediaController.updateState(false, index, "");
+            mediaController.updateState(false, currentIndex, "");
         }
     }
 
@@ -202,6 +284,7 @@ public class ReaderController implements TtsEngineListener, PlaybackControl {
                 Log.w("ReaderController", "Ignored invalid start sentence: " + sentence);
                 this.currentIndex = 0; // Fallback
             }
+            this.currentChunk = chunkStartingAt(currentIndex);
         } else {
             this.currentIndex = sentence;
         }
@@ -0,0 +1,105 @@
+package com.doctell.app.model.voice;
+
+/**
+ * Size limits and counters of {@link BufferedTtsEngine}'s PCM ring.
+ * <p>
+ * Synthesis stops when the ring holds {@link #getDepth()} chunks or {@link #getMemoryCeiling()}
+ * bytes, whichever comes first. The fill is changed under the engine's lock; the underrun counts
+ * are written by the player thread only and can be read from anywhere.
+ */
+public final class RingBudget {
+
+    public static final int DEFAULT_DEPTH = 4;
+    public static final long DEFAULT_MEMORY_CEILING = 8L * 1024 * 1024;
+    static final int MIN_DEPTH = 1;
+    static final int MAX_DEPTH = 16;
+    static final long MIN_MEMORY_CEILING = 256L * 1024;
+
+    /** Snapshot of the ring for logging and settings. */
+    public static final class Stats {
+        public final int depth;
+        public final long memoryCeiling;
+        public final int bufferedChunks;
+        public final long bufferedBytes;
+        /** Times the player ran dry while a chunk was still being synthesized. */
+        public final int underruns;
+        /** Underruns the AudioTracks reported, i.e. audible gaps inside a chunk. */
+        public final int trackUnderruns;
+
+        Stats(int depth, long memoryCeiling, int bufferedChunks, long bufferedBytes,
+              int underruns, int trackUnderruns) {
+            this.depth = depth;
+            this.memoryCeiling = memoryCeiling;
+            this.bufferedChunks = bufferedChunks;
+            this.bufferedBytes = bufferedBytes;
+            this.underruns = underruns;
+            this.trackUnderruns = trackUnderruns;
+        }
+
+        @Override
+        public String toString() {
+            return "chunks=" + bufferedChunks + "/" + depth + ", bytes=" + bufferedBytes + "/" + memoryCeiling
+                    + ", underruns=" + underruns + ", trackUnderruns=" + trackUnderruns;
+        }
+    }
+
+    private int depth = DEFAULT_DEPTH;
+    private long memoryCeiling = DEFAULT_MEMORY_CEILING;
+    private int chunks;
+    private long bytes;
+    private volatile int underruns;
+    private volatile int releasedTrackUnderruns; // from tracks already released
+    private volatile int trackUnderruns;
+
+    /** Clamps to 1..16 chunks and at least 256 KiB, so one chunk always fits. */
+    public void configure(int depth, long memoryCeilingBytes) {
+        this.depth = Math.max(MIN_DEPTH, Math.min(MAX_DEPTH, depth));
+        this.memoryCeiling = Math.max(MIN_MEMORY_CEILING, memoryCeilingBytes);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getMemoryCeiling() {
+        return memoryCeiling;
+    }
+
+    /** Whether another chunk may be synthesized; the last one may overshoot the ceiling. */
+    boolean hasRoom() {
+        return chunks < depth && bytes < memoryCeiling;
+    }
+
+    void added(int chunkBytes) {
+        chunks++;
+        bytes += chunkBytes;
+    }
+
+    void removed(int chunkBytes) {
+        chunks = Math.max(0, chunks - 1);
+        bytes = Math.max(0, bytes - chunkBytes);
+    }
+
+    void cleared() {
+        chunks = 0;
+        bytes = 0;
+    }
+
+    void onUnderrun() {
+        underruns++;
+    }
+
+    /** Latest {@code AudioTrack.getUnderrunCount()} of the track in use. */
+    void onTrackUnderruns(int count) {
+        trackUnderruns = releasedTrackUnderruns + count;
+    }
+
+    /** Keeps the count of a track that is about to be released; the next one starts at 0. */
+    void onTrackReleased() {
+        releasedTrackUnderruns = trackUnderruns;
+    }
+
+    public Stats getStats() {
+        return new Stats(depth, memoryCeiling, chunks, bytes, underruns, trackUnderruns);
+    }
+}
@@ -0,0 +1,124 @@
+package com.doctell.app.model.voice;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How sentences end in one language: the abbreviations whose dot is not a sentence end, and
+ * whether the text needs a {@link java.text.BreakIterator} because it has no spaces to go by.
+ * <p>
+ * Abbreviations are lower case without their last dot; a trailing {@code #} means "only when a
+ * number follows" (e.g. "No. 5", "s. 12"). Single capital letters are taken as initials.
+ */
+final class SentenceRules {
+
+    /** The original split: {@code . ! ?} followed by whitespace, nothing else. */
+    static final SentenceRules LEGACY = new SentenceRules(false, false, new String[0]);
+
+    private static final String[] EN = {
+            "mr", "mrs", "ms", "dr", "prof", "sr", "jr", "st", "vs", "e.g", "i.e", "cf", "approx",
+            "dept", "fig#", "no#", "vol#", "p#", "pp#", "ch#", "sec#"
+    };
+    private static final String[] SV = {
+            "t.ex", "bl.a", "d.v.s", "dvs", "m.fl", "s.k", "ca", "jfr", "resp", "fr.o.m", "t.o.m",
+            "p.g.a", "enl", "dr", "prof", "kl#", "nr#", "s#", "kap#", "fig#", "st#"
+    };
+    private static final String[] DE = {
+            "z.b", "d.h", "u.a", "bzw", "ca", "vgl", "ggf", "evtl", "dr", "prof", "hr", "fr",
+            "s#", "nr#", "abb#", "kap#", "bd#"
+    };
+    private static final String[] FR = {
+            "mme", "mlle", "p.ex", "cf", "av", "apr", "dr", "p#", "n#", "chap#", "fig#", "vol#"
+    };
+    private static final String[] ES = {
+            "sr", "sra", "srta", "dr", "dra", "ud", "uds", "p.ej", "p\u00e1g#", "n\u00fam#", "cap#", "fig#"
+    };
+
+    // languages written without spaces between sentences
+    private static final String[] NO_SPACES = {"zh", "ja", "th", "lo", "km", "my"};
+
+    private static final Map<String, SentenceRules> BY_LANGUAGE = new ConcurrentHashMap<>();
+
+    /** Ellipsis, full-width marks and closing quotes are understood. */
+    final boolean extended;
+    /** Sentence ends come from a BreakIterator for the language. */
+    final boolean breakIterator;
+    private final String[] abbreviations;
+
+    private SentenceRules(boolean extended, boolean breakIterator, String[] abbreviations) {
+        this.extended = extended;
+        this.breakIterator = breakIterator;
+        this.abbreviations = abbreviations;
+    }
+
+    /** Rules for a language tag such as "sv", "sv-SE" or "zh_CN"; legacy rules for null. */
+    static SentenceRules forLanguage(String lang) {
+        if (lang == null || lang.isEmpty()) return LEGACY;
+        String primary = primaryLanguage(lang);
+        SentenceRules rules = BY_LANGUAGE.get(primary);
+        if (rules == null) {
+            rules = create(primary);
+            BY_LANGUAGE.put(primary, rules);
+        }
+        return rules;
+    }
+
+    static String primaryLanguage(String lang) {
+        int cut = lang.length();
+        for (int i = 0; i < lang.length(); i++) {
+            char c = lang.charAt(i);
+            if (c == '-' || c == '_') {
+                cut = i;
+                break;
+            }
+        }
+        return lang.substring(0, cut).toLowerCase(Locale.ROOT);
+    }
+
+    private static SentenceRules create(String primary) {
+        for (String l : NO_SPACES) {
+            if (l.equals(primary)) return new SentenceRules(true, true, new String[0]);
+        }
+        switch (primary) {
+            case "en": return new SentenceRules(true, false, EN);
+            case "sv": return new SentenceRules(true, false, SV);
+            case "de": return new SentenceRules(true, false, DE);
+            case "fr": return new SentenceRules(true, false, FR);
+            case "es": return new SentenceRules(true, false, ES);
+            default: return new SentenceRules(true, false, new String[0]);
+        }
+    }
+
+    /**
+     * Whether the dot at {@code dot} closes an abbreviation or an initial rather than a sentence.
+     * {@code next} is the first non-space char after it, 0 at the end of the text.
+     */
+    boolean isAbbreviation(CharSequence text, int dot, char next) {
+        if (!extended) return false;
+        int start = dot;
+        while (start > 0 && (Character.isLetter(text.charAt(start - 1)) || text.charAt(start - 1) == '.')) {
+            start--;
+        }
+        int len = dot - start;
+        if (len == 0) return false;
+        char first = text.charAt(start);
+        // J. R. R. Tolkien, but not "so did I."
+        if (len == 1 && Character.isUpperCase(first) && first != 'I') return true;
+        for (String abbr : abbreviations) {
+            boolean numberOnly = abbr.charAt(abbr.length() - 1) == '#';
+            int abbrLen = numberOnly ? abbr.length() - 1 : abbr.length();
+            if (abbrLen != len) continue;
+            if (numberOnly && !Character.isDigit(next)) continue;
+            if (regionMatchesIgnoreCase(text, start, abbr, abbrLen)) return true;
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int start, String abbr, int len) {
+        for (int k = 0; k < len; k++) {
+            if (Character.toLowerCase(text.charAt(start + k)) != abbr.charAt(k)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,231 @@
+package com.doctell.app.model.voice;
+
+import java.text.BreakIterator;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Splits page text into sentences in one pass, as char offsets rather than Strings.
+ * <p>
+ * Without a language a sentence ends at {@code .}, {@code !} or {@code ?} followed by whitespace,
+ * the split the old {@code (?<=[.!?])\s+} regex made. With one, {@link SentenceRules} for it also
+ * know ellipses, full-width marks, closing quotes and abbreviations, and scripts without spaces
+ * go through a pooled {@link BreakIterator}. Ranges are trimmed and empty or noise ranges
+ * dropped. Text is only built when a sentence is handed to the engine, see {@link #text} and
+ * {@link Sentences}.
+ */
+public final class SentenceSegmenter {
+
+    // a few iterators per language; they are expensive to create and not thread-safe
+    private static final int POOL_PER_LANGUAGE = 2;
+    private static final Map<String, ArrayDeque<BreakIterator>> POOL = new HashMap<>();
+
+    private SentenceSegmenter() {}
+
+    /** Sentence boundaries as [start0, end0, start1, end1, ...], language-neutral. */
+    public static int[] segment(CharSequence page) {
+        return segment(page, null);
+    }
+
+    /** Sentence boundaries for text in a language such as "sv" or "zh-CN"; null for neutral. */
+    public static int[] segment(CharSequence page, String lang) {
+        return segment(page, lang, NoiseFilter.DEFAULT);
+    }
+
+    /**
+     * Sentence boundaries with the book's own noise: lines the filter blanks are skipped and
+     * sentences it calls noise are dropped. Offsets still point into {@code page}.
+     */
+    public static int[] segment(CharSequence page, String lang, NoiseFilter noise) {
+        if (page == null) return new int[0];
+        return segmentMasked(noise.maskLines(page), lang, noise);
+    }
+
+    /**
+     * The sentences to speak, split as {@link #segment(CharSequence, String, NoiseFilter)}.
+     * Strings are built from the masked text, so a blanked line inside a sentence is not spoken.
+     */
+    public static Sentences sentences(CharSequence page, String lang, NoiseFilter noise) {
+        CharSequence masked = page != null ? noise.maskLines(page) : "";
+        return new Sentences(masked, segmentMasked(masked, lang, noise));
+    }
+
+    private static int[] segmentMasked(CharSequence page, String lang, NoiseFilter noise) {
+        SentenceRules rules = SentenceRules.forLanguage(lang);
+        if (rules.breakIterator) return segmentWithBreakIterator(page, lang, noise);
+
+        int len = page.length();
+        int[] out = new int[16];
+        int n = 0;
+        int from = 0;
+        for (int i = 0; i < len; i++) {
+            char c = page.charAt(i);
+            boolean fullWidth = rules.extended && isFullWidthEnd(c);
+            if (!fullWidth && !(c == '.' || c == '!' || c == '?' || (rules.extended && c == '\u2026'))) {
+                continue;
+            }
+            int end = i + 1;
+            if (rules.extended) {
+                // "?!", "...", and quotes or brackets closing the sentence stay with it
+                while (end < len && (isTerminator(page.charAt(end)) || isCloser(page.charAt(end)))) end++;
+            }
+            if (!fullWidth && !(end < len && isSpace(page.charAt(end)))) {
+                i = end - 1;
+                continue;
+            }
+            int next = end;
+            while (next < len && isSpace(page.charAt(next))) next++;
+            char after = next < len ? page.charAt(next) : 0;
+            // a new sentence does not start in lower case: "9.30 a.m. sharp", "\"Go!\" she said"
+            if ((rules.extended && Character.isLowerCase(after))
+                    || (c == '.' && end == i + 1 && rules.isAbbreviation(page, i, after))) {
+                i = next - 1;
+                continue;
+            }
+            out = grow(out, n);
+            n = add(out, n, page, from, end, noise);
+            from = next;
+            i = next - 1;
+        }
+        if (from < len) {
+            out = grow(out, n);
+            n = add(out, n, page, from, len, noise);
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] segmentWithBreakIterator(CharSequence page, String lang, NoiseFilter noise) {
+        String key = SentenceRules.primaryLanguage(lang);
+        BreakIterator it = acquire(key, lang);
+        try {
+            it.setText(page.toString());
+            int[] out = new int[16];
+            int n = 0;
+            int start = it.first();
+            for (int end = it.next(); end != BreakIterator.DONE; start = end, end = it.next()) {
+                out = grow(out, n);
+                n = add(out, n, page, start, end, noise);
+            }
+            return Arrays.copyOf(out, n);
+        } finally {
+            release(key, it);
+        }
+    }
+
+    private static BreakIterator acquire(String key, String lang) {
+        synchronized (POOL) {
+            ArrayDeque<BreakIterator> free = POOL.get(key);
+            BreakIterator it = free != null ? free.poll() : null;
+            if (it != null) return it;
+        }
+        return BreakIterator.getSentenceInstance(Locale.forLanguageTag(lang.replace('_', '-')));
+    }
+
+    private static void release(String key, BreakIterator it) {
+        it.setText("");
+        synchronized (POOL) {
+            ArrayDeque<BreakIterator> free = POOL.get(key);
+            if (free == null) {
+                free = new ArrayDeque<>(POOL_PER_LANGUAGE);
+                POOL.put(key, free);
+            }
+            if (free.size() < POOL_PER_LANGUAGE) free.offer(it);
+        }
+    }
+
+    /** Ideographic full stop and full-width ! and ?: a sentence end even with no space after. */
+    private static boolean isFullWidthEnd(char c) {
+        return c == '\u3002' || c == '\uFF01' || c == '\uFF1F';
+    }
+
+    private static boolean isTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '\u2026' || isFullWidthEnd(c);
+    }
+
+    private static boolean isCloser(char c) {
+        switch (c) {
+            case '"': case '\'': case ')': case ']':
+            case '\u201D': case '\u2019': case '\u00BB': case '\u300D': case '\u300F': case '\uFF09':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int[] grow(int[] out, int n) {
+        return n + 2 > out.length ? Arrays.copyOf(out, out.length * 2) : out;
+    }
+
+    private static int add(int[] out, int n, CharSequence page, int start, int end, NoiseFilter noise) {
+        while (start < end && page.charAt(start) <= ' ') start++;
+        while (end > start && page.charAt(end - 1) <= ' ') end--;
+        if (start == end || noise.isNoise(page, start, end)) return n;
+        out[n] = start;
+        out[n + 1] = end;
+        return n + 2;
+    }
+
+    /** Same set as the regex {@code \s}. */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** The text handed to the engine for a range: whitespace runs collapsed to one space. */
+    public static String text(CharSequence page, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        boolean inSpace = false;
+        for (int i = start; i < end; i++) {
+            char c = page.charAt(i);
+            if (isSpace(c)) {
+                if (!inSpace) sb.append(' ');
+                inSpace = true;
+            } else {
+                sb.append(c);
+                inSpace = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Sentences of a page as a list whose Strings are built on first access. */
+    public static final class Sentences extends AbstractList<String> {
+        private final CharSequence page;
+        private final int[] ranges;
+        private final String[] cache;
+
+        public Sentences(CharSequence page, int[] ranges) {
+            this.page = page;
+            this.ranges = ranges;
+            this.cache = new String[ranges.length / 2];
+        }
+
+        /** Text the strings are built from; noise lines blanked if made by {@link #sentences}. */
+        public CharSequence getText() {
+            return page;
+        }
+
+        /** Boundaries as [start0, end0, start1, end1, ...]. */
+        public int[] getRanges() {
+            return ranges;
+        }
+
+        @Override
+        public String get(int index) {
+            String s = cache[index];
+            if (s == null) {
+                s = text(page, ranges[index * 2], ranges[index * 2 + 1]);
+                cache[index] = s;
+            }
+            return s;
+        }
+
+        @Override
+        public int size() {
+            return cache.length;
+        }
+    }
+}
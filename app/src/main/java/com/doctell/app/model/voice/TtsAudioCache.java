@@ -0,0 +1,242 @@
+package com.doctell.app.model.voice;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk cache of synthesized sentences, keyed by a hash of text, voice, language and rate.
+ * <p>
+ * Audio is stored as 8-bit G.711 mu-law, half the size of the engine's 16-bit PCM and plenty for
+ * speech. Entries are evicted least recently used first once the byte budget is exceeded.
+ */
+public final class TtsAudioCache {
+
+    private static final String TAG = "TtsAudioCache";
+
+    static final String DIR = "tts_audio";
+    static final String EXT = ".ula";
+    private static final int MAGIC = 0x44544155; // "DTAU"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * 5;
+
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private static TtsAudioCache instance;
+
+    public static synchronized TtsAudioCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new TtsAudioCache(new File(context.getApplicationContext().getCacheDir(), DIR));
+        }
+        return instance;
+    }
+
+    private final File dir;
+    // key -> file size, least recently used first; loaded from disk on first use
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private boolean loaded;
+    private long totalBytes;
+    private long budget = DEFAULT_BUDGET;
+
+    private TtsAudioCache(File dir) {
+        this.dir = dir;
+    }
+
+    public static String key(String text, String voiceName, String lang, float rate) {
+        String raw = text + '\u0000' + voiceName + '\u0000' + lang + '\u0000'
+                + Math.round(rate * 100);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(raw.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Android runtime has SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized void setBudget(long bytes) {
+        budget = Math.max(0, bytes);
+        trim();
+    }
+
+    public synchronized long getTotalBytes() {
+        load();
+        return totalBytes;
+    }
+
+    /** Decoded audio for a key, or null on a miss. */
+    synchronized WavPcm get(String key, int index) {
+        load();
+        if (entries.get(key) == null) return null; // get() also marks it recently used
+
+        File f = fileFor(key);
+        f.setLastModified(System.currentTimeMillis());
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown cache entry format");
+            }
+            int sampleRate = in.readInt();
+            int channels = in.readInt();
+            int len = in.readInt();
+            byte[] ulaw = new byte[len];
+            in.readFully(ulaw);
+            return new WavPcm(index, sampleRate, channels, decode(ulaw));
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable entry " + key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    synchronized void put(String key, WavPcm pcm) {
+        load();
+        if (entries.containsKey(key)) return;
+
+        byte[] ulaw = encode(pcm.data);
+        File target = fileFor(key);
+        File tmp = new File(dir, key + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pcm.sampleRate);
+            out.writeInt(pcm.channels);
+            out.writeInt(ulaw.length);
+            out.write(ulaw);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache audio", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            return;
+        }
+        long size = HEADER_SIZE + ulaw.length;
+        entries.put(key, size);
+        totalBytes += size;
+        trim();
+    }
+
+    public synchronized void clear() {
+        load();
+        for (String key : new ArrayList<>(entries.keySet())) {
+            remove(key);
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(dir, key + EXT);
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) totalBytes -= size;
+        fileFor(key).delete();
+    }
+
+    private void trim() {
+        if (totalBytes <= budget) return;
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (it.hasNext() && totalBytes > budget) {
+            Map.Entry<String, Long> e = it.next();
+            totalBytes -= e.getValue();
+            fileFor(e.getKey()).delete();
+            it.remove();
+        }
+    }
+
+    /** Rebuilds the LRU order from file times the first time the cache is touched. */
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        List<File> list = new ArrayList<>();
+        for (File f : files) {
+            if (f.getName().endsWith(EXT)) list.add(f);
+            else f.delete(); // leftover .tmp
+        }
+        File[] sorted = list.toArray(new File[0]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : sorted) {
+            String name = f.getName();
+            entries.put(name.substring(0, name.length() - EXT.length()), f.length());
+            totalBytes += f.length();
+        }
+        trim();
+    }
+
+    // ---- G.711 mu-law ----
+
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32635;
+    private static final short[] DECODE = new short[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int u = ~i & 0xFF;
+            int exponent = (u >> 4) & 0x07;
+            int sample = ((((u & 0x0F) << 3) + BIAS) << exponent) - BIAS;
+            DECODE[i] = (short) ((u & 0x80) != 0 ? -sample : sample);
+        }
+    }
+
+    /** 16-bit little-endian PCM to one mu-law byte per sample. */
+    static byte[] encode(byte[] pcm) {
+        byte[] out = new byte[pcm.length / 2];
+        for (int i = 0, j = 0; j < out.length; i += 2, j++) {
+            int sample = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            int sign = (sample >> 8) & 0x80;
+            if (sign != 0) sample = -sample;
+            if (sample > CLIP) sample = CLIP;
+            sample += BIAS;
+            int exponent = 7;
+            for (int mask = 0x4000; (sample & mask) == 0 && exponent > 0; mask >>= 1) {
+                exponent--;
+            }
+            int mantissa = (sample >> (exponent + 3)) & 0x0F;
+            out[j] = (byte) ~(sign | (exponent << 4) | mantissa);
+        }
+        return out;
+    }
+
+    static byte[] decode(byte[] ulaw) {
+        byte[] out = new byte[ulaw.length * 2];
+        for (int i = 0, j = 0; i < ulaw.length; i++, j += 2) {
+            short s = DECODE[ulaw[i] & 0xFF];
+            out[j] = (byte) s;
+            out[j + 1] = (byte) (s >> 8);
+        }
+        return out;
+    }
+}
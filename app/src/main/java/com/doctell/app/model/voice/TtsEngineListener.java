@@ -3,6 +3,8 @@ package com.doctell.app.model.voice;
 public interface TtsEngineListener {
     void onEngineChunkStart(String utteranceId);
     void onEngineChunkDone(String utteranceId);
+    /** The engine is about to speak chars [start, end) of the chunk's text. */
+    void onEngineRangeStart(String utteranceId, int start, int end);
     void onEngineError(String utteranceId);
     void setStartSentence(int sentence);
 
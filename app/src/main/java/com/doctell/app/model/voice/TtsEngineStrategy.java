@@ -6,6 +6,12 @@ public interface TtsEngineStrategy {
     void init(Context context);
     void setListener(TtsEngineListener listener);
     void speakChunk(String text,int index);
+    /** Adds a chunk behind the ones already handed to the engine, without interrupting them. */
+    void queueChunk(String text, int index);
+    /** How many chunks the engine wants queued at once, the one being spoken included. */
+    int getQueueDepth();
+    /** Utterance length this engine works best with at its current rate; see {@link ChunkPlanner}. */
+    ChunkPlanner.Window getChunkWindow();
     void pause();
     void resume();
     void stop();
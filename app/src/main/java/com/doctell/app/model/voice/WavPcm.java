@@ -0,0 +1,90 @@
+package com.doctell.app.model.voice;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** 16-bit PCM samples of one synthesized chunk, read from the WAV file the engine wrote. */
+final class WavPcm {
+
+    final int index;
+    final int sampleRate;
+    final int channels;
+    final byte[] data;
+    // word ranges as (frame, start, end) triples; none for chunks served from the audio cache
+    int[] ranges;
+    int rangeCount;
+
+    WavPcm(int index, int sampleRate, int channels, byte[] data) {
+        this.index = index;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.data = data;
+    }
+
+    static WavPcm read(File file, int index) throws IOException {
+        long fileLength = file.length();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (readTag(in) != 0x52494646 /* RIFF */) throw new IOException("Not a RIFF file");
+            readLeInt(in);
+            if (readTag(in) != 0x57415645 /* WAVE */) throw new IOException("Not a WAVE file");
+
+            int sampleRate = 0, channels = 0, bits = 0;
+            long consumed = 12;
+            while (true) {
+                int tag = readTag(in);
+                long size = readLeInt(in) & 0xFFFFFFFFL;
+                consumed += 8;
+                if (tag == 0x666D7420 /* fmt  */) {
+                    int format = readLeShort(in);
+                    channels = readLeShort(in);
+                    sampleRate = readLeInt(in);
+                    readLeInt(in); // byte rate
+                    readLeShort(in); // block align
+                    bits = readLeShort(in);
+                    skipFully(in, size - 16);
+                    consumed += size;
+                    if (format != 1 || bits != 16) {
+                        throw new IOException("Unsupported WAV format " + format + "/" + bits);
+                    }
+                } else if (tag == 0x64617461 /* data */) {
+                    if (sampleRate == 0) throw new IOException("data before fmt");
+                    // engines streaming to the file may leave the size at 0 or too large
+                    long available = fileLength - consumed;
+                    int len = (int) (size == 0 || size > available ? available : size);
+                    len -= len % (2 * channels);
+                    byte[] pcm = new byte[len];
+                    in.readFully(pcm);
+                    return new WavPcm(index, sampleRate, channels, pcm);
+                } else {
+                    skipFully(in, size + (size & 1));
+                    consumed += size + (size & 1);
+                }
+            }
+        }
+    }
+
+    private static int readTag(DataInputStream in) throws IOException {
+        return in.readInt();
+    }
+
+    private static int readLeInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static int readLeShort(DataInputStream in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xFFFF;
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) throw new IOException("Truncated WAV");
+            n -= skipped;
+        }
+    }
+}
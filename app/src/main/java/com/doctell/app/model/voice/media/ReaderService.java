@@ -10,7 +10,7 @@ import android.content.Intent;
 import android.content.Context;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.pdf.PdfRenderer;
+import android.graphics.RectF;
 import android.media.AudioAttributes;
 import android.media.AudioFocusRequest;
 import android.media.AudioManager;
@@ -21,7 +21,6 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
-import android.os.ParcelFileDescriptor;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.util.DisplayMetrics;
 import android.util.Log;
@@ -34,22 +33,27 @@ import androidx.media.session.MediaButtonReceiver;
 import com.doctell.app.R;
 import com.doctell.app.model.analytics.DocTellCrashlytics;
 import com.doctell.app.model.entity.Book;
+import com.doctell.app.model.entity.Prefs;
 import com.doctell.app.model.entity.StepLength;
 import com.doctell.app.model.pdf.PageLifecycleManager;
+import com.doctell.app.model.pdf.PageLookahead;
+import com.doctell.app.model.pdf.PageModel;
+import com.doctell.app.model.pdf.PageTimeoutException;
 import com.doctell.app.model.repository.BookStorage;
+import com.doctell.app.model.pdf.PdfLoader;
 import com.doctell.app.model.pdf.PdfManager;
 import com.doctell.app.model.pdf.PdfPreviewHelper;
 import com.doctell.app.model.repository.StepPrefs;
 import com.doctell.app.model.utils.PermissionHelper;
+import com.doctell.app.model.voice.BufferedTtsEngine;
 import com.doctell.app.model.voice.HighlightListener;
 import com.doctell.app.model.voice.ReaderController;
-import com.doctell.app.model.voice.TTSBuffer;
 import com.doctell.app.model.voice.TtsEngineStrategy;
 import com.doctell.app.model.voice.notPublic.TtsEngineProvider;
-import com.tom_roush.pdfbox.pdmodel.PDDocument;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -70,9 +74,11 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
     private AudioFocusRequest audioFocusRequest;
     private boolean resumeAfterFocusGain = false;
     private boolean autoReading = false;
+    // the buffered engine plays through its own AudioTrack and keeps the session alive itself
+    private volatile boolean ownAudioOutput = false;
     // field
     private final Runnable watchdogRunnable =
-            SilentPlayer.makeWatchdog(() -> autoReading, this);
+            SilentPlayer.makeWatchdog(() -> autoReading && !ownAudioOutput, this);
 
     private PageLifecycleManager pageLifecycleManager;
     private final AudioManager.OnAudioFocusChangeListener audioFocusChangeListener =
@@ -159,6 +165,7 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
     private Book currentBook;
     private ReaderController.MediaNav uiMediaNav;
     private PdfManager pdfManager;
+    private PageLookahead pageLookahead;
     ExecutorService executor;
     private Handler mainHandler;
     private Bitmap coverOfBook;
@@ -232,6 +239,7 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
         executor = Executors.newSingleThreadExecutor();
         mainHandler = new Handler(Looper.getMainLooper());
         createNotificationChannel();
+        ownAudioOutput = BufferedTtsEngine.isEnabled(this);
         SilentPlayer.getWatchdogHandler().post(watchdogRunnable);
         mediaController = new ReaderMediaController(this, this);
         pageLifecycleManager = new PageLifecycleManager();
@@ -308,8 +316,16 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
         if (readerController == null) return;
         boolean wasPlaying = autoReading;
         Log.d("ReaderService", "Hot-swapping TTS engine...");
-        TtsEngineStrategy newEngine = TtsEngineProvider.getEngine(getApplicationContext());
+        ownAudioOutput = BufferedTtsEngine.isEnabled(this);
+        if (ownAudioOutput) SilentPlayer.stopSilentAudio();
+        TtsEngineStrategy newEngine = BufferedTtsEngine.select(getApplicationContext(),
+                TtsEngineProvider.getEngine(getApplicationContext()));
         readerController.switchEngine(newEngine, wasPlaying);
+        if (pdfManager != null) pdfManager.setLanguage(speechLanguage());
+    }
+
+    private void startSilentAudio() {
+        if (!ownAudioOutput) SilentPlayer.startSilentAudio(this);
     }
 
     @Override
@@ -329,6 +345,11 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
             readerController.shutdown();
         }
 
+        if (pageLookahead != null) {
+            pageLookahead.shutdown();
+            pageLookahead = null;
+        }
+
         if (pdfManager != null) {
             pdfManager.close();
             pdfManager = null;
@@ -374,7 +395,7 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
             Log.d("ReaderService","play(): autoReading=true");
             autoReading = true;
             requestAudioFocus();
-            SilentPlayer.startSilentAudio(this);
+            startSilentAudio();
             if (mediaController != null && mediaController.getMediaSession() != null) {
                 mediaController.getMediaSession().setActive(true);
             }
@@ -443,6 +464,15 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
         });
     }
 
+    /** Restarts the current page at a sentence, e.g. the one under a long-pressed word. */
+    public void readFromSentence(int sentence) {
+        safeExecuteAction(() -> {
+            if (readerController == null || currentBook == null) return;
+            currentBook.setSentence(sentence);
+            readerController.startReadingFrom(sentence);
+        });
+    }
+
     public void registerUiHighlightListener(HighlightListener listener) {
         uiHighlightListener = listener;
     }
@@ -459,11 +489,19 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
     public void onChunkStart(int index, String text) {
         currentBook.setSentence(index);
         onReadingPositionChanged();
+        startLookahead();
         if (uiHighlightListener != null) {
             uiHighlightListener.onChunkStart(index, text);
         }
     }
 
+    @Override
+    public void onChunkRange(int index, String text, int start, int end) {
+        if (uiHighlightListener != null) {
+            uiHighlightListener.onChunkRange(index, text, start, end);
+        }
+    }
+
     @Override
     public void onChunkDone(int index, String text) {
         if (uiHighlightListener != null) {
@@ -473,6 +511,9 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
 
     @Override
     public void onPageFinished() {
+        if (pageLookahead != null && currentBook != null) {
+            pageLookahead.onPageFinished(currentBook.getLastPage());
+        }
         if (uiHighlightListener != null) {
             uiHighlightListener.onPageFinished();
         }
@@ -547,11 +588,11 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
     }
 
 
-    public void initBook(Book book, PDDocument doc, ParcelFileDescriptor pdf, PdfRenderer renderer) {
+    public void initBook(Book book, PdfLoader.PdfSession session) {
         Context appCtx = getApplicationContext();
         if (book != null) {
             currentBook = book;
-            this.pdfManager = new PdfManager(appCtx, currentBook.getLocalPath(), doc, pdf, renderer);
+            setPdfManager(new PdfManager(appCtx, currentBook.getLocalPath(), session));
             executor.execute(()->{
                 try {
                     pdfManager.ensureOpened();
@@ -575,30 +616,117 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
             });
         }
     }
+
+    private void setPdfManager(PdfManager manager) {
+        if (pageLookahead != null) pageLookahead.shutdown();
+        pdfManager = manager;
+        manager.setLanguage(speechLanguage());
+        pageLookahead = new PageLookahead(manager);
+    }
+
+    /** Language the engines speak, as they persist it; sentences are split by its rules. */
+    private String speechLanguage() {
+        return getSharedPreferences(Prefs.DOCTELL_PREFS.toString(), Context.MODE_PRIVATE)
+                .getString(Prefs.LANG.toString(), Locale.getDefault().toLanguageTag());
+    }
+
+    /** Let the lookahead prepare the pages after the one being read. */
+    private void startLookahead() {
+        if (pageLookahead == null || currentBook == null) return;
+        try {
+            pageLookahead.onPageStarted(currentBook.getLastPage(), pdfManager.getPageCount());
+        } catch (IOException e) {
+            Log.w("ReaderService", "startLookahead: page count unavailable", e);
+        }
+    }
+
+    /** Model of a page if the lookahead already prepared it, otherwise null. */
+    public PageModel peekPageModel(int pageIndex) {
+        return pdfManager != null ? pdfManager.peekPageModel(pageIndex) : null;
+    }
+
+    /**
+     * Sentences of the page being read. Throws a {@link PageTimeoutException} for a page that
+     * is too slow to extract right now, see {@link #loadReadableSentences}.
+     */
     public List<String> loadCurrentPageSentences() throws IOException {
-        String pageText = pdfManager.getPageText(currentBook.getLastPage());
+        return pdfManager.getPageModel(currentBook.getLastPage(), false).getSentences();
+    }
+
+    /**
+     * Sentences of the page being read, moving on past pages that are too slow to extract
+     * right now, each with a notice and a page turn in the UI. Throws if the book ends first.
+     */
+    List<String> loadReadableSentences() throws IOException {
+        while (true) {
+            try {
+                return loadCurrentPageSentences();
+            } catch (PageTimeoutException e) {
+                int page = currentBook.getLastPage();
+                if (page + 1 >= pdfManager.getPageCount()) throw e;
+                Log.w("ReaderService", e.getMessage() + ", skipping it");
+                notifyPageSkipped(page);
+                currentBook.setLastPage(page + 1);
+                currentBook.setSentence(0);
+                onReadingPositionChanged();
+                mainHandler.post(() -> {
+                    if (uiMediaNav != null) uiMediaNav.navForward();
+                });
+            }
+        }
+    }
+
+    /** Short notice that a page is skipped while its text is extracted in the background. */
+    void notifyPageSkipped(int pageIndex) {
+        Context appCtx = getApplicationContext();
+        mainHandler.post(() -> Toast.makeText(appCtx,
+                "Page " + (pageIndex + 1) + " is slow to load, skipping it",
+                Toast.LENGTH_SHORT).show());
+    }
+
+    /** Page model with word boxes, for highlighting the sentence being spoken. */
+    public PageModel getPageModel(int pageIndex) throws IOException {
+        return pdfManager.getPageModel(pageIndex, true);
+    }
 
-        TTSBuffer.getInstance().setPage(pageText);
-        return TTSBuffer.getInstance().getAllSentences();
+    /** Highlight rects of a spoken sentence in page points. */
+    public List<RectF> getSentenceRects(int pageIndex, int sentence, String text) throws IOException {
+        return pdfManager.getSentenceRects(pageIndex, sentence, text);
     }
+
     public Bitmap getPageBitmap(DisplayMetrics dm, int widthPx) throws IOException {
         return pdfManager.renderPageBitmap(currentBook.getLastPage(), dm, widthPx);
     }
 
+    /** Cached render of a page for an instant flip, or null. */
+    public Bitmap peekPageBitmap(int pageIndex, DisplayMetrics dm, int widthPx) {
+        if (pdfManager == null) return null;
+        return pdfManager.peekPageBitmap(pageIndex, dm, widthPx);
+    }
+
+    public void onPageBitmapShown(Bitmap bmp) {
+        if (pdfManager != null) pdfManager.onPageBitmapShown(bmp);
+    }
+
+    public void prefetchPageBitmap(int pageIndex, DisplayMetrics dm, int widthPx) throws IOException {
+        if (pdfManager == null) return;
+        pdfManager.prefetchPageBitmap(pageIndex, dm, widthPx);
+    }
+
     @SuppressLint("ForegroundServiceType")
     public void startReading(Book book,
                              TtsEngineStrategy engine,
-                             PDDocument doc,
-                             ParcelFileDescriptor pfd,
-                             PdfRenderer renderer) {
+                             PdfLoader.PdfSession session) {
         requestAudioFocus();
-        SilentPlayer.startSilentAudio(this);
+        startSilentAudio();
         autoReading = true;
         currentBook = book;
         Context appCtx = getApplicationContext();
 
         if (pdfManager == null) {
-            pdfManager = new PdfManager(appCtx, currentBook.getLocalPath(), doc, pfd, renderer);
+            setPdfManager(new PdfManager(appCtx, currentBook.getLocalPath(), session));
+        } else {
+            pdfManager.setLanguage(speechLanguage()); // may have been changed in settings
         }
 
         if (coverOfBook != null)
@@ -606,10 +734,7 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
 
         executor.execute(() -> {
             try {
-                String text = pdfManager.getPageText(currentBook.getLastPage());
-                TTSBuffer buffer = TTSBuffer.getInstance();
-                buffer.setPage(text);
-                List<String> chunks = buffer.getAllSentences();
+                List<String> chunks = loadReadableSentences();
 
                 if (chunks == null || chunks.isEmpty()) {
                     Log.w("ReaderService", "No text found on page " + currentBook.getLastPage());
@@ -637,6 +762,7 @@ public class ReaderService extends Service implements PlaybackControl, Highlight
                                 uiMediaNav
                         );
                         readerController.setMediaController(mediaController);
+                        readerController.setStartSentence(startSentence);
                     } else {
                         readerController.setChunks(chunks, startSentence);
                     }
@@ -7,6 +7,8 @@ import android.widget.Toast;
 import com.doctell.app.model.analytics.DocTellCrashlytics;
 import com.doctell.app.model.entity.Book;
 import com.doctell.app.model.entity.StepLength;
+import com.doctell.app.model.pdf.PageModel;
+import com.doctell.app.model.pdf.PageTimeoutException;
 import com.doctell.app.model.pdf.PdfManager;
 import com.doctell.app.model.repository.StepPrefs;
 import com.doctell.app.model.voice.ReaderController;
@@ -46,6 +48,10 @@ public final class StepNavigator {
                     // Keep controller in sync with freshly loaded chunks
                     readerController.setChunks(chunks, currentSentence);
                 }
+            } catch (PageTimeoutException e) {
+                // too slow to extract right now: step past it by page
+                Log.w(TAG, "next(): " + e.getMessage());
+                chunks = null;
             } catch (IOException e) {
                 DocTellCrashlytics.logPdfError(currentBook, currentPage, "get_sentences", e);
                 Log.e(TAG, "next(): loadCurrentPageSentences failed", e);
@@ -72,20 +78,25 @@ public final class StepNavigator {
                 currentBook.setSentence(0);
                 service.onReadingPositionChanged();
 
+                // Prepared by the lookahead: hand the sentences over without a reload
+                PageModel prepared = service.peekPageModel(newPage);
+                if (prepared != null) {
+                    Log.d(TAG, "next(): page " + newPage + " ready from lookahead");
+                    mainHandler.post(() ->
+                            startNextPage(service, readerController, uiMediaNav, prepared.getSentences()));
+                    return;
+                }
+
                 service.executor.execute(() -> {
                     try {
-                        List<String> newChunks = service.loadCurrentPageSentences();
-                        mainHandler.post(() -> {
-                            if (readerController != null && newChunks != null && !newChunks.isEmpty()) {
-                                readerController.setChunks(newChunks, 0);
-                                readerController.startReading();
-                            } else if (readerController != null) {
-                                Toast.makeText(service, "illegible text", Toast.LENGTH_SHORT).show();
-                                service.next();
-                            }
-
-                            if (uiMediaNav != null) uiMediaNav.navForward();
-                        });
+                        // pages too slow to extract right now are skipped, never waited for
+                        List<String> newChunks = service.loadReadableSentences();
+                        mainHandler.post(() ->
+                                startNextPage(service, readerController, uiMediaNav, newChunks));
+                    } catch (PageTimeoutException e) {
+                        // the last page, nothing left to skip to
+                        Log.w(TAG, "next(): " + e.getMessage());
+                        service.notifyPageSkipped(e.pageIndex);
                     } catch (IOException e) {
                         Log.e(TAG, "next(): failed to load page text", e);
                         DocTellCrashlytics.logPdfError(currentBook, newPage, "render_page", e);
@@ -124,6 +135,23 @@ public final class StepNavigator {
         }
     }
 
+    private static void startNextPage(
+            ReaderService service,
+            ReaderController readerController,
+            ReaderController.MediaNav uiMediaNav,
+            List<String> newChunks
+    ) {
+        if (readerController != null && newChunks != null && !newChunks.isEmpty()) {
+            readerController.setChunks(newChunks, 0);
+            readerController.startReading();
+        } else if (readerController != null) {
+            Toast.makeText(service, "illegible text", Toast.LENGTH_SHORT).show();
+            service.next();
+        }
+
+        if (uiMediaNav != null) uiMediaNav.navForward();
+    }
+
     static void handlePrevSentenceOrPage(
             ReaderService service,
             Book currentBook,
@@ -163,6 +191,12 @@ public final class StepNavigator {
                         }
                         if (uiMediaNav != null) uiMediaNav.navBackward();
                     });
+                } catch (PageTimeoutException e) {
+                    Log.w(TAG, "prev(): " + e.getMessage());
+                    service.notifyPageSkipped(newPage);
+                    mainHandler.post(() -> {
+                        if (uiMediaNav != null) uiMediaNav.navBackward();
+                    });
                 } catch (IOException e) {
                     Log.e(TAG, "prev(): failed to load page text", e);
                     DocTellCrashlytics.logPdfError(currentBook, newPage, "render_page", e);
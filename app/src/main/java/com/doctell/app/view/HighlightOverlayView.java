@@ -10,19 +10,33 @@ import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class HighlightOverlayView extends View {
 
-    private final List<RectF> baseRects = new ArrayList<>();
+    // sentence rects as l, t, r, b in page points, reused between sentences
+    private float[] rectBuf = new float[32];
+    private int rectCount;
+    // word being spoken, drawn over the sentence; moves at speech rate so it only
+    // invalidates the area it leaves and enters
+    private final float[] word = new float[4];
+    private boolean hasWord;
     private final RectF tmpRect = new RectF();
+    private final RectF dirty = new RectF();
     private final Matrix imageMatrix = new Matrix();
+    // page points -> bitmap pixels; rects are kept in page points so zoom or a new
+    // render width only changes the matrices
+    private final Matrix pageMatrix = new Matrix();
+    private final Matrix drawMatrix = new Matrix();
+    private final Matrix inverseMatrix = new Matrix();
     private final Paint paint;
+    private final Paint wordPaint;
 
     public HighlightOverlayView(Context context, Paint paint) {
         super(context, null);
         this.paint = paint;
+        this.wordPaint = newWordPaint();
     }
 
     public HighlightOverlayView(Context context, AttributeSet attrs) {
@@ -35,39 +49,114 @@ public class HighlightOverlayView extends View {
         paint.setStyle(Paint.Style.FILL);
         // semi-transparent yellow
         paint.setColor(0x55FFFF00);
+        wordPaint = newWordPaint();
+    }
+
+    private static Paint newWordPaint() {
+        Paint p = new Paint(Paint.ANTI_ALIAS_FLAG);
+        p.setStyle(Paint.Style.FILL);
+        // stronger orange over the sentence yellow
+        p.setColor(0x66FF9800);
+        return p;
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        for (RectF r : baseRects) {
-            tmpRect.set(r);
-            imageMatrix.mapRect(tmpRect);
+        for (int i = 0, o = 0; i < rectCount; i++, o += 4) {
+            tmpRect.set(rectBuf[o], rectBuf[o + 1], rectBuf[o + 2], rectBuf[o + 3]);
+            drawMatrix.mapRect(tmpRect);
             canvas.drawRect(tmpRect, paint);
         }
+        if (hasWord) {
+            tmpRect.set(word[0], word[1], word[2], word[3]);
+            drawMatrix.mapRect(tmpRect);
+            canvas.drawRect(tmpRect, wordPaint);
+        }
     }
 
     public void setHighlights(List<RectF> rects) {
-        baseRects.clear();
-        if (rects != null) {
-            for (RectF r : rects) {
-                baseRects.add(new RectF(r));
-            }
+        int n = rects != null ? rects.size() : 0;
+        if (n * 4 > rectBuf.length) rectBuf = Arrays.copyOf(rectBuf, Math.max(n * 4, rectBuf.length * 2));
+        for (int i = 0, o = 0; i < n; i++, o += 4) {
+            RectF r = rects.get(i);
+            rectBuf[o] = r.left;
+            rectBuf[o + 1] = r.top;
+            rectBuf[o + 2] = r.right;
+            rectBuf[o + 3] = r.bottom;
         }
+        rectCount = n;
+        hasWord = false;
         invalidate();
     }
 
     public void clearHighlights() {
-        baseRects.clear();
+        rectCount = 0;
+        hasWord = false;
         invalidate();
     }
 
+    /** Moves the word highlight; coordinates are page points like the sentence rects. */
+    public void setWordHighlight(float left, float top, float right, float bottom) {
+        if (hasWord && word[0] == left && word[1] == top && word[2] == right && word[3] == bottom) {
+            return;
+        }
+        boolean had = hasWord;
+        if (had) dirty.set(word[0], word[1], word[2], word[3]);
+        word[0] = left;
+        word[1] = top;
+        word[2] = right;
+        word[3] = bottom;
+        hasWord = true;
+        if (had) {
+            dirty.union(left, top, right, bottom);
+        } else {
+            dirty.set(left, top, right, bottom);
+        }
+        invalidateDirty();
+    }
+
+    public void clearWordHighlight() {
+        if (!hasWord) return;
+        dirty.set(word[0], word[1], word[2], word[3]);
+        hasWord = false;
+        invalidateDirty();
+    }
+
+    private void invalidateDirty() {
+        drawMatrix.mapRect(dirty);
+        // anti-aliased edges reach a pixel past the rect
+        postInvalidateOnAnimation(
+                (int) Math.floor(dirty.left) - 1, (int) Math.floor(dirty.top) - 1,
+                (int) Math.ceil(dirty.right) + 1, (int) Math.ceil(dirty.bottom) + 1);
+    }
+
     public void setImageMatrix(Matrix matrix) {
         if (matrix != null) {
             this.imageMatrix.set(matrix);
-            invalidate();
+            updateDrawMatrix();
+        }
+    }
+
+    public void setPageMatrix(Matrix matrix) {
+        if (matrix != null) {
+            this.pageMatrix.set(matrix);
+            updateDrawMatrix();
         }
     }
 
+    /** Maps a point in view pixels back to page points in place; false if the matrix can't be inverted. */
+    public boolean mapViewToPage(float[] point) {
+        if (!drawMatrix.invert(inverseMatrix)) return false;
+        inverseMatrix.mapPoints(point);
+        return true;
+    }
+
+    private void updateDrawMatrix() {
+        drawMatrix.set(pageMatrix);
+        drawMatrix.postConcat(imageMatrix);
+        invalidate();
+    }
+
 }
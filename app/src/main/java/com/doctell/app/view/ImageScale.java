@@ -5,6 +5,7 @@ import android.graphics.Matrix;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
+import android.view.ViewConfiguration;
 import android.widget.ImageView;
 
 public class ImageScale {
@@ -27,6 +28,8 @@ public class ImageScale {
     public interface TapNavigator {
         void onTapLeft();
         void onTapRight();
+        /** Finger held still on the page; coordinates are view pixels. */
+        void onLongPress(float x, float y);
     }
     private final TapNavigator tapNavigator;
     private float tapDownX;
@@ -35,6 +38,8 @@ public class ImageScale {
 
     private static final int TAP_TIMEOUT_MS = 200;
     private static final float TAP_SLOP_PX = 20f;
+    private static final int LONG_PRESS_MS = ViewConfiguration.getLongPressTimeout();
+    private boolean multiTouch;
 
     public ImageScale(ImageView pdfView, Context ctx, TapNavigator tapNavigator) {
         this.pdfView = pdfView;
@@ -117,6 +122,11 @@ public class ImageScale {
                 tapDownX = event.getX();
                 tapDownY = event.getY();
                 tapDownTime = System.currentTimeMillis();
+                multiTouch = false;
+                break;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                multiTouch = true;
                 break;
 
             case MotionEvent.ACTION_MOVE:
@@ -142,7 +152,13 @@ public class ImageScale {
 
                 boolean isTap = dt < TAP_TIMEOUT_MS && dxUp < TAP_SLOP_PX && dyUp < TAP_SLOP_PX;
 
-                if (isTap && scale == MIN_SCALE && tapNavigator != null) {
+                boolean isLongPress = !multiTouch && dt >= LONG_PRESS_MS
+                        && dxUp < TAP_SLOP_PX && dyUp < TAP_SLOP_PX;
+
+                if (isLongPress && tapNavigator != null) {
+                    // works zoomed in too; the caller maps the point through the matrix
+                    tapNavigator.onLongPress(event.getX(), event.getY());
+                } else if (isTap && scale == MIN_SCALE && tapNavigator != null) {
                     // Only page-tap when not zoomed in
                     float midX = pdfView.getWidth() / 2f;
                     if (event.getX() < midX) {
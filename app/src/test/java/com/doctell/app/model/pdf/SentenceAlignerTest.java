@@ -0,0 +1,133 @@
+package com.doctell.app.model.pdf;
+
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SentenceAligner}; plain JVM, no device needed.
+ */
+public class SentenceAlignerTest {
+
+    private static List<String> words(String page) {
+        return Arrays.asList(page.split(" "));
+    }
+
+    @Test
+    public void exactMatch_returnsWordRange() {
+        List<String> page = words("Chapter one. The quick brown fox jumps over the lazy dog. The end.");
+        SentenceAligner.Match m = SentenceAligner.align(page, "The quick brown fox jumps over the lazy dog.");
+        assertNotNull(m);
+        assertEquals(2, m.firstWord);
+        assertEquals(10, m.lastWord);
+        assertEquals(1f, m.score, 0f);
+    }
+
+    @Test
+    public void exactMatch_ignoresCaseQuotesAndCommas() {
+        List<String> page = words("He said: \"Well, THAT was odd\" and left.");
+        SentenceAligner.Match m = SentenceAligner.align(page, "he said well that was odd and left.");
+        assertNotNull(m);
+        assertEquals(0, m.firstWord);
+        assertEquals(page.size() - 1, m.lastWord);
+    }
+
+    @Test
+    public void repeatedSentence_picksFirstOccurrence() {
+        List<String> page = words("Stop here. Go on. Stop here.");
+        SentenceAligner.Match m = SentenceAligner.align(page, "Stop here.");
+        assertNotNull(m);
+        assertEquals(0, m.firstWord);
+        assertEquals(1, m.lastWord);
+    }
+
+    @Test
+    public void fuzzy_toleratesHyphenationAndDroppedWord() {
+        // stripper split "extraordinary" and lost "very"
+        List<String> page = words("Intro text. It was a extra- ordinary day for us all. Next part.");
+        SentenceAligner.Match m = SentenceAligner.align(page,
+                "It was a very extraordinary day for us all.");
+        assertNotNull(m);
+        assertEquals(2, m.firstWord);
+        assertEquals(10, m.lastWord);
+        assertTrue(m.score >= SentenceAligner.THRESHOLD);
+        assertTrue(m.score < 1f);
+    }
+
+    @Test
+    public void fuzzy_trimsUnrelatedEdges() {
+        List<String> page = words("alpha beta gamma one two three four five delta epsilon");
+        SentenceAligner.Match m = SentenceAligner.align(page, "one two three fuor five");
+        assertNotNull(m);
+        assertEquals(3, m.firstWord);
+        assertEquals(7, m.lastWord);
+    }
+
+    @Test
+    public void unrelatedSentence_returnsNull() {
+        List<String> page = words("The quick brown fox jumps over the lazy dog.");
+        assertNull(SentenceAligner.align(page, "Completely different words appear here now."));
+    }
+
+    @Test
+    public void emptyInputs_returnNull() {
+        assertNull(SentenceAligner.align(new ArrayList<>(), "anything"));
+        assertNull(SentenceAligner.align(words("some words"), null));
+        assertNull(SentenceAligner.align(words("some words"), " , ; "));
+    }
+
+    @Test
+    public void punctuationOnlyWords_areSkippedButIndicesKept() {
+        List<String> page = Arrays.asList("(", "first", "part", ")", "second", "part");
+        SentenceAligner.Match m = SentenceAligner.align(page, "second part");
+        assertNotNull(m);
+        assertEquals(4, m.firstWord);
+        assertEquals(5, m.lastWord);
+    }
+
+    @Test
+    public void densePage_visitsEachWordOnce() {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) words.add("w" + (i % 997));
+        words.add("needle");
+        words.add("at");
+        words.add("the");
+        words.add("end");
+        CountingList page = new CountingList(words);
+
+        // "thee" forces the fuzzy pass over the whole page
+        SentenceAligner.Match m = SentenceAligner.align(page, "needle at thee end");
+
+        assertNotNull(m);
+        assertEquals(20000, m.firstWord);
+        assertEquals(20003, m.lastWord);
+        // the old pairwise search read every word once per candidate start
+        assertEquals(words.size(), page.gets);
+    }
+
+    /** Counts reads of the page words, the work a pairwise search repeats per start. */
+    private static final class CountingList extends AbstractList<String> {
+        private final List<String> words;
+        int gets;
+
+        CountingList(List<String> words) {
+            this.words = words;
+        }
+
+        @Override
+        public String get(int index) {
+            gets++;
+            return words.get(index);
+        }
+
+        @Override
+        public int size() {
+            return words.size();
+        }
+    }
+}
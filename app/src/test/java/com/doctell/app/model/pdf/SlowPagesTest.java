@@ -0,0 +1,64 @@
+package com.doctell.app.model.pdf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SlowPages}; plain JVM, no device needed.
+ */
+public class SlowPagesTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("book", SlowPages.EXT);
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void missingFile_noPagesFlagged() {
+        SlowPages pages = new SlowPages(file);
+        assertFalse(pages.contains(0));
+        assertEquals(0, pages.toArray().length);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void add_isKeptAcrossSessions() {
+        SlowPages pages = new SlowPages(file);
+        pages.add(12);
+        pages.add(3);
+        pages.add(12);
+        assertTrue(pages.contains(3));
+
+        SlowPages reopened = new SlowPages(file);
+        assertArrayEquals(new int[]{3, 12}, reopened.toArray());
+        assertFalse(reopened.contains(4));
+    }
+
+    @Test
+    public void tornFile_isDroppedNotFatal() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0, 0, 0, 5, 0, 0}); // claims five pages, holds half of one
+        }
+        SlowPages pages = new SlowPages(file);
+        assertFalse(pages.contains(0));
+        assertFalse(file.exists());
+
+        pages.add(7);
+        assertTrue(new SlowPages(file).contains(7));
+    }
+}
@@ -0,0 +1,108 @@
+package com.doctell.app.model.voice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ChunkPlanner} and the mapping kept in {@link ChunkPlan}.
+ */
+public class ChunkPlannerTest {
+
+    private static final ChunkPlanner.Window WINDOW = new ChunkPlanner.Window(15, 60);
+
+    @Test
+    public void shortSentences_areMergedUpToMinimum() {
+        List<String> s = Arrays.asList("Chapter 3.", "Results.", "The experiment ran for six weeks.", "Done.");
+        ChunkPlan plan = ChunkPlanner.plan(s, WINDOW);
+
+        assertEquals(3, plan.getChunkCount());
+        assertEquals("Chapter 3. Results.", plan.getChunk(0));
+        assertEquals(0, plan.firstSentenceOf(0));
+        assertEquals(1, plan.lastSentenceOf(0));
+        assertEquals("The experiment ran for six weeks.", plan.getChunk(1));
+        assertEquals(2, plan.firstSentenceOf(1));
+        assertEquals(3, plan.firstSentenceOf(2));
+    }
+
+    @Test
+    public void longSentence_isSplitAtClauseBreaks() {
+        String run = "When the tide finally came in over the long flats, the boats that had been "
+                + "left on the sand floated off and the fishermen who had waited since dawn pushed out";
+        ChunkPlan plan = ChunkPlanner.plan(Arrays.asList("Hi there, friend.", run), WINDOW);
+
+        assertTrue(plan.getChunkCount() > 2);
+        StringBuilder rebuilt = new StringBuilder();
+        for (int c = 1; c < plan.getChunkCount(); c++) {
+            String chunk = plan.getChunk(c);
+            assertTrue(chunk, chunk.length() <= WINDOW.maxChars);
+            assertEquals(1, plan.firstSentenceOf(c));
+            assertEquals(c == plan.getChunkCount() - 1, plan.endsSentence(c));
+            if (rebuilt.length() > 0) rebuilt.append(' ');
+            rebuilt.append(chunk);
+        }
+        assertEquals(run, rebuilt.toString());
+        assertTrue(plan.getChunk(1).endsWith(","));
+    }
+
+    @Test
+    public void startMidChunk_getsAChunkOfItsOwn() {
+        List<String> s = Arrays.asList("Chapter 3.", "Results.", "The experiment ran for six weeks.");
+        assertEquals(0, ChunkPlanner.plan(s, WINDOW).chunkOfSentence(1)); // merged with sentence 0
+
+        ChunkPlan plan = ChunkPlanner.plan(s, WINDOW, 1);
+        int chunk = plan.chunkOfSentence(1);
+        assertEquals(1, plan.firstSentenceOf(chunk));
+        assertTrue(plan.getChunk(chunk).startsWith("Results."));
+        assertEquals("Chapter 3.", plan.getChunk(0));
+        assertEquals(0, plan.chunkOfSentence(0));
+    }
+
+    @Test
+    public void chunkOfSentence_pointsAtFirstChunkSpeakingIt() {
+        List<String> s = Arrays.asList("A.", "B.", "A much longer sentence that stands alone here.");
+        ChunkPlan plan = ChunkPlanner.plan(s, WINDOW);
+        assertEquals(0, plan.chunkOfSentence(0));
+        assertEquals(0, plan.chunkOfSentence(1));
+        assertEquals(plan.getChunkCount() - 1, plan.chunkOfSentence(2));
+        assertEquals(0, plan.chunkOfSentence(-4));
+    }
+
+    @Test
+    public void locate_mapsChunkOffsetsBackToSentences() {
+        List<String> s = Arrays.asList("One.", "Two words.", "Three here and there.");
+        ChunkPlan plan = ChunkPlanner.plan(s, new ChunkPlanner.Window(40, 80));
+        assertEquals(1, plan.getChunkCount());
+        int[] out = new int[2];
+
+        assertTrue(plan.locate(0, 0, out));
+        assertArrayEquals(new int[]{0, 0}, out);
+        assertTrue(plan.locate(0, 9, out)); // "words." in "One. Two words."
+        assertArrayEquals(new int[]{1, 4}, out);
+        assertFalse(plan.locate(0, 4, out)); // the joining space
+        assertTrue(plan.locate(0, 16, out));
+        assertArrayEquals(new int[]{2, 0}, out);
+    }
+
+    @Test
+    public void locate_inSplitPiece_addsPieceOffset() {
+        String run = "alpha beta gamma delta epsilon zeta eta theta iota kappa lambda mu nu xi omicron pi";
+        ChunkPlan plan = ChunkPlanner.plan(Arrays.asList(run), WINDOW);
+        assertTrue(plan.getChunkCount() > 1);
+        int[] out = new int[2];
+        assertTrue(plan.locate(1, 0, out));
+        assertEquals(0, out[0]);
+        assertEquals(run.indexOf(plan.getChunk(1)), out[1]);
+    }
+
+    @Test
+    public void windowScalesWithRate() {
+        ChunkPlanner.Window normal = ChunkPlanner.Window.forDuration(2000, 8000, 1f);
+        ChunkPlanner.Window fast = ChunkPlanner.Window.forDuration(2000, 8000, 2f);
+        assertEquals(normal.maxChars * 2, fast.maxChars);
+        assertTrue(normal.minChars < normal.maxChars);
+    }
+}
@@ -0,0 +1,116 @@
+package com.doctell.app.model.voice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NoiseFilter}: pattern matching and learned header/footer lines.
+ */
+public class NoiseFilterTest {
+
+    private static final NoiseFilter PATTERNS = new NoiseFilter(
+            Arrays.asList("OceanofPDF.com", "Downloaded from  Example Library", "he", "she", "hers"),
+            new long[0]);
+
+    @Test
+    public void wholeMatch_isNoise_caseAndSpacingIgnored() {
+        assertTrue(PATTERNS.isNoise("OceanofPDF.com"));
+        assertTrue(PATTERNS.isNoise("oceanofpdf.COM"));
+        assertTrue(PATTERNS.isNoise("Downloaded from\n example   library"));
+        assertTrue(PATTERNS.isNoise("OceanofPDF.com - OceanofPDF.com"));
+    }
+
+    @Test
+    public void partialMatch_isNotNoise() {
+        assertFalse(PATTERNS.isNoise("Read more at OceanofPDF.com"));
+        assertFalse(PATTERNS.isNoise("OceanofPDF.co"));
+        assertFalse(PATTERNS.isNoise("12 OceanofPDF.com"));
+    }
+
+    @Test
+    public void overlappingPatterns_coverEachOther() {
+        // "ushers" holds she, he and hers; only "u" is left uncovered
+        assertFalse(PATTERNS.isNoise("ushers"));
+        assertTrue(PATTERNS.isNoise("shers"));
+        assertTrue(PATTERNS.isNoise("hershe"));
+    }
+
+    @Test
+    public void punctuationOnly_isNoise() {
+        assertTrue(PATTERNS.isNoise("* * *"));
+        assertFalse(PATTERNS.isNoise("42"));
+    }
+
+    @Test
+    public void maskLines_keepsOffsets() {
+        String page = "First line.\nOceanofPDF.com\nLast line.";
+        CharSequence masked = PATTERNS.maskLines(page);
+        assertEquals(page.length(), masked.length());
+        assertEquals("First line.\n              \nLast line.", masked.toString());
+        String clean = "Nothing to hide here.";
+        assertSame(clean, PATTERNS.maskLines(clean));
+    }
+
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo",
+            "foxtrot", "golf", "hotel", "india", "juliet"};
+
+    @Test
+    public void learner_findsRunningHeaderAndPageNumbers() {
+        NoiseFilter.LineLearner learner = new NoiseFilter.LineLearner();
+        for (int p = 1; p <= 10; p++) {
+            learner.addPage("THE VOYAGE OUT\n" + WORDS[p - 1] + " opens page " + p + ".\n"
+                    + "Body text of page " + p + " goes on.\nMore of it.\n"
+                    + WORDS[10 - p] + " closes it.\n\n  " + p + "\n");
+        }
+        long[] lines = learner.repeatedLines();
+        // header and page number; "Body text of page #" repeats too, but away from the edges
+        assertEquals(2, lines.length);
+
+        NoiseFilter filter = NoiseFilter.DEFAULT.withRepeatedLines(lines);
+        String page = "The Voyage  Out\nA new page starts here.\nIt ends here.\n 231\n";
+        int[] r = SentenceSegmenter.segment(page, null, filter);
+        assertEquals(2, r.length / 2);
+        assertEquals("A new page starts here.", SentenceSegmenter.text(page, r[0], r[1]));
+    }
+
+    @Test
+    public void noiseLineInsideSentence_isNotSpoken() {
+        String page = "It was a cold\nOceanofPDF.com\nmorning in March. Then it rained.";
+        List<String> spoken = SentenceSegmenter.sentences(page, null, PATTERNS);
+        assertEquals(Arrays.asList("It was a cold morning in March.", "Then it rained."), spoken);
+    }
+
+    @Test
+    public void learner_ignoresLinesOnFewPages() {
+        NoiseFilter.LineLearner learner = new NoiseFilter.LineLearner();
+        for (int p = 0; p < 20; p++) {
+            learner.addPage((p < 3 ? "Preface\n" : "") + "Line " + p + " of body.\nAnother " + p + "x" + p);
+        }
+        for (long h : learner.repeatedLines()) {
+            assertNotEquals(NoiseFilter.lineHash("Preface", 0, 7), h);
+        }
+    }
+
+    @Test
+    public void repeatedLine_inMiddleOfPage_isKept() {
+        NoiseFilter.LineLearner learner = new NoiseFilter.LineLearner();
+        for (int p = 0; p < 8; p++) learner.addPage("Header\nText " + p + ".\nMore " + p + ".\nEnd " + p + ".");
+        NoiseFilter filter = NoiseFilter.DEFAULT.withRepeatedLines(learner.repeatedLines());
+        String page = "One.\nTwo.\nHeader\nThree.\nFour.";
+        assertSame(page, filter.maskLines(page));
+    }
+
+    @Test
+    public void suppliedPatterns_addToTheBuiltInOnes() {
+        NoiseFilter filter = NoiseFilter.withPatterns(Arrays.asList("Scanned by BookBot"));
+        assertTrue(filter.isNoise("scanned by  bookbot"));
+        assertTrue(filter.isNoise("OceanofPDF.com"));
+        assertFalse(NoiseFilter.DEFAULT.isNoise("Scanned by BookBot"));
+        assertSame(NoiseFilter.DEFAULT, NoiseFilter.withPatterns(Collections.emptyList()));
+    }
+}
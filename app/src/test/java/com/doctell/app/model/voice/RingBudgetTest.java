@@ -0,0 +1,86 @@
+package com.doctell.app.model.voice;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RingBudget}, the limits and counters behind
+ * {@link BufferedTtsEngine#configure} and {@link BufferedTtsEngine#getStats}.
+ */
+public class RingBudgetTest {
+
+    @Test
+    public void depth_stopsSynthesisFirst() {
+        RingBudget budget = new RingBudget();
+        budget.configure(2, 1024 * 1024);
+
+        budget.added(1000);
+        assertTrue(budget.hasRoom());
+        budget.added(1000);
+        assertFalse(budget.hasRoom());
+
+        budget.removed(1000);
+        assertTrue(budget.hasRoom());
+    }
+
+    @Test
+    public void memoryCeiling_stopsSynthesisFirst() {
+        RingBudget budget = new RingBudget();
+        budget.configure(8, 300 * 1024);
+
+        budget.added(200 * 1024);
+        assertTrue(budget.hasRoom());
+        budget.added(200 * 1024); // the last chunk may overshoot
+        assertFalse(budget.hasRoom());
+    }
+
+    @Test
+    public void configure_clampsToOneChunkAndMinimumCeiling() {
+        RingBudget budget = new RingBudget();
+        budget.configure(0, 0);
+
+        assertEquals(RingBudget.MIN_DEPTH, budget.getDepth());
+        assertEquals(RingBudget.MIN_MEMORY_CEILING, budget.getMemoryCeiling());
+
+        budget.configure(1000, RingBudget.DEFAULT_MEMORY_CEILING);
+        assertEquals(RingBudget.MAX_DEPTH, budget.getDepth());
+    }
+
+    @Test
+    public void stats_reportFillAndUnderruns() {
+        RingBudget budget = new RingBudget();
+        budget.added(4000);
+        budget.added(6000);
+        budget.removed(4000);
+        budget.onUnderrun();
+        budget.onUnderrun();
+
+        RingBudget.Stats stats = budget.getStats();
+        assertEquals(RingBudget.DEFAULT_DEPTH, stats.depth);
+        assertEquals(RingBudget.DEFAULT_MEMORY_CEILING, stats.memoryCeiling);
+        assertEquals(1, stats.bufferedChunks);
+        assertEquals(6000, stats.bufferedBytes);
+        assertEquals(2, stats.underruns);
+
+        budget.cleared();
+        assertEquals(0, budget.getStats().bufferedChunks);
+        assertEquals(0, budget.getStats().bufferedBytes);
+        assertEquals(2, budget.getStats().underruns);
+    }
+
+    @Test
+    public void trackUnderruns_addUpAcrossTracks() {
+        RingBudget budget = new RingBudget();
+        budget.onTrackUnderruns(1);
+        budget.onTrackUnderruns(3);
+        assertEquals(3, budget.getStats().trackUnderruns);
+
+        // a new track for another sample rate counts from 0 again
+        budget.onTrackReleased();
+        budget.onTrackUnderruns(0);
+        assertEquals(3, budget.getStats().trackUnderruns);
+        budget.onTrackUnderruns(2);
+        assertEquals(5, budget.getStats().trackUnderruns);
+    }
+}
@@ -0,0 +1,137 @@
+package com.doctell.app.model.voice;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SentenceSegmenter}; the regex split it replaced is kept here as
+ * the reference it has to agree with.
+ */
+public class SentenceSegmenterTest {
+
+    private static final String PAGE =
+            "CHAPTER ONE\n\nThe Voyage Out.  It was a cold morning in\nearly March, and the "
+            + "harbour\twas still.   \"Where are we going?\" she asked!\nNobody answered... "
+            + "The ship left at 9.30 a.m. sharp; e.g. before the tide turned. OceanofPDF.com\n"
+            + "Figure 2.1: Map of the route\n  Footnotes ?! are odd.\n";
+
+    /**
+     * The split the reader used to make with {@code (?<=[.!?])\s+} and {@code replaceAll},
+     * with sentences dropped by the default noise filter.
+     */
+    private static List<String> regexSentences(String page) {
+        Pattern br = Pattern.compile("(?<=[.!?])\\s+");
+        List<String> out = new ArrayList<>();
+        Matcher m = br.matcher(page);
+        int from = 0;
+        while (true) {
+            boolean found = m.find();
+            String s = page.substring(from, found ? m.start() : page.length()).trim();
+            s = s.replaceAll("\\s+", " ");
+            if (!s.isEmpty() && !NoiseFilter.DEFAULT.isNoise(s)) out.add(s);
+            if (!found) break;
+            from = m.end();
+        }
+        return out;
+    }
+
+    private static List<String> segmented(String page) {
+        return segmented(page, null);
+    }
+
+    private static List<String> segmented(String page, String lang) {
+        int[] r = SentenceSegmenter.segment(page, lang);
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < r.length; i += 2) out.add(SentenceSegmenter.text(page, r[i], r[i + 1]));
+        return out;
+    }
+
+    @Test
+    public void matchesRegexSplit_onPageText() {
+        assertEquals(regexSentences(PAGE), segmented(PAGE));
+    }
+
+    @Test
+    public void matchesRegexSplit_onEdgeCases() {
+        String[] pages = {"", " ", ".", ". ", "  . x", "a.b. c", "end.", "a!?  b", "x. \n\t y.  ",
+                "OceanofPDF.com", "  OceanofPDF.com  . next"};
+        for (String p : pages) {
+            assertEquals("page [" + p + "]", regexSentences(p), segmented(p));
+        }
+    }
+
+    @Test
+    public void ranges_pointIntoPage() {
+        int[] r = SentenceSegmenter.segment("One.  Two!\nThree");
+        assertArrayEquals(new int[]{0, 4, 6, 10, 11, 16}, r);
+    }
+
+    @Test
+    public void noiseLine_isDropped() {
+        assertEquals(1, SentenceSegmenter.segment("Real text. OceanofPDF.com").length / 2);
+    }
+
+    @Test
+    public void lazyList_buildsStringsOnDemand() {
+        String page = "First one.   Second\n one.";
+        SentenceSegmenter.Sentences s =
+                new SentenceSegmenter.Sentences(page, SentenceSegmenter.segment(page));
+        assertEquals(2, s.size());
+        assertEquals("Second one.", s.get(1));
+        assertSame(s.get(1), s.get(1));
+    }
+
+    @Test
+    public void swedishAbbreviations_doNotSplit() {
+        List<String> s = segmented("Ta med t.ex. en karta. Se s. 12 och bl.a. kap. 3. Klart.", "sv-SE");
+        assertEquals(3, s.size());
+        assertEquals("Ta med t.ex. en karta.", s.get(0));
+        assertEquals("Se s. 12 och bl.a. kap. 3.", s.get(1));
+    }
+
+    @Test
+    public void englishTitlesAndInitials_doNotSplit() {
+        List<String> s = segmented("Dr. Smith met J. R. R. Tolkien. So did I. Then at 9 a.m. sharp they left.", "en");
+        assertEquals(3, s.size());
+        assertEquals("Dr. Smith met J. R. R. Tolkien.", s.get(0));
+        assertEquals("So did I.", s.get(1));
+    }
+
+    @Test
+    public void ellipsisAndClosingQuotes_endSentences() {
+        List<String> s = segmented("He waited\u2026 Nothing. \u201cGo!\u201d she said. \"Why?\" Fine.", "en");
+        assertEquals(5, s.size());
+        assertEquals("He waited\u2026", s.get(0));
+        assertEquals("\u201cGo!\u201d she said.", s.get(2));
+        assertEquals("\"Why?\"", s.get(3));
+    }
+
+    @Test
+    public void fullWidthStops_needNoSpace() {
+        List<String> s = segmented("\u4eca\u5929\u5f88\u597d\u3002\u6211\u4eec\u8d70\u5427\uff01\u597d\u5417\uff1f", "zh-CN");
+        assertEquals(3, s.size());
+        assertEquals("\u4eca\u5929\u5f88\u597d\u3002", s.get(0));
+        // the same marks in text tagged as a spaced language
+        assertEquals(3, segmented("\u4eca\u5929\u3002\u6211\u4eec\uff01\u597d\uff1f", "en").size());
+    }
+
+    @Test
+    public void noLanguage_keepsLegacySplit() {
+        String page = "Dr. Smith left\u2026 then came back.";
+        assertEquals(regexSentences(page), segmented(page, null));
+    }
+
+    @Test
+    public void matchesRegexSplit_onLongPage() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) sb.append(PAGE);
+        String page = sb.toString();
+        assertEquals(regexSentences(page), segmented(page));
+    }
+}